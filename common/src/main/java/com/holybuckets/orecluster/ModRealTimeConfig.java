@@ -57,6 +57,11 @@ public class ModRealTimeConfig
 
     private Set<BlockState> validOreClusterBlocks;
 
+    /** Microseconds per server tick available to OreClusterManager workers across all dimensions **/
+    private int tickBudgetMicros = OreClusterConfigData.COreClusters.DEF_ORE_CLUSTER_TICK_BUDGET_MICROS.get();
+    /** Cluster chunks per second queued for regeneration by an OreClusterRegenJob **/
+    private int regenChunksPerSecond = OreClusterConfigData.COreClusters.DEF_ORE_CLUSTER_REGEN_CHUNKS_PER_SECOND.get();
+
     /** We will batch checks for which chunks have clusters by the next CHUNK_NORMALIZATION_TOTAL chunks at a time
      thus the spawnrate is normalized to 256 chunks */
     public static final Integer CHUNK_NORMALIZATION_TOTAL = OreClusterConfigData.COreClusters.DEF_ORE_CLUSTER_SPAWNRATE_AREA;
@@ -108,6 +113,16 @@ public class ModRealTimeConfig
         this.defaultConfig = new OreClusterConfigModel(clusterConfig);
         defaultConfig.setConfigId();
 
+        this.tickBudgetMicros = OreClusterConfigData.COreClusters.DEF_ORE_CLUSTER_TICK_BUDGET_MICROS.get();
+        if( HBUtil.Validator.validateNumber(clusterConfig.oreClusterTickBudgetMicros,
+            OreClusterConfigData.COreClusters.DEF_ORE_CLUSTER_TICK_BUDGET_MICROS, "for tick budget") )
+            this.tickBudgetMicros = clusterConfig.oreClusterTickBudgetMicros;
+
+        this.regenChunksPerSecond = OreClusterConfigData.COreClusters.DEF_ORE_CLUSTER_REGEN_CHUNKS_PER_SECOND.get();
+        if( HBUtil.Validator.validateNumber(clusterConfig.oreClusterRegenChunksPerSecond,
+            OreClusterConfigData.COreClusters.DEF_ORE_CLUSTER_REGEN_CHUNKS_PER_SECOND, "for regen chunks per second") )
+            this.regenChunksPerSecond = clusterConfig.oreClusterRegenChunksPerSecond;
+
 
         File configFile = new File(clusterConfig.oreClusterFileConfigPath);
         File defaultConfigFile = new File(OreClusterConfigData.COreClusters.DEF_ORE_CLUSTER_FILE_CONFIG_PATH);
@@ -264,6 +279,14 @@ public class ModRealTimeConfig
             return defaultConfig;
         }
 
+        public int getTickBudgetMicros() {
+            return tickBudgetMicros;
+        }
+
+        public int getRegenChunksPerSecond() {
+            return regenChunksPerSecond;
+        }
+
         /**
          *  Setters
          */
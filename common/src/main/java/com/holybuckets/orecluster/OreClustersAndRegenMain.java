@@ -114,6 +114,7 @@ public class OreClustersAndRegenMain
             manager.shutdown();
         }
         oreClusterManagers.clear();
+        OreClusterWorkerPool.shutdown();
         
         // Shutdown other systems
         regenManager.shutdown();
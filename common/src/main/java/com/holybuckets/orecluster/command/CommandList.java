@@ -250,6 +250,16 @@ public class CommandList {
             return Commands.literal(PREFIX)
                 .then(Commands.literal("triggerRegen")
                     .executes(context -> execute(context.getSource(), null, null))
+                    .then(Commands.literal("status")
+                        .executes(context -> executeStatus(context.getSource())))
+                    .then(Commands.literal("cancel")
+                        .executes(context -> executeCancel(context.getSource())))
+                    .then(Commands.literal("rate")
+                    .then(Commands.argument("chunksPerSecond", IntegerArgumentType.integer(1))
+                        .executes(context -> executeRate(
+                            context.getSource(),
+                            IntegerArgumentType.getInteger(context, "chunksPerSecond")
+                        ))))
                     .then(Commands.argument("chunkX", IntegerArgumentType.integer())
                     .then(Commands.argument("chunkZ", IntegerArgumentType.integer())
                         .executes(context -> execute(
@@ -271,7 +281,7 @@ public class CommandList {
                 if(chunkX == null || chunkZ == null) {
                     // Global regen
                     api.triggerRegen();
-                    source.sendSuccess(() -> Component.literal("Global regeneration triggered"), true);
+                    source.sendSuccess(() -> Component.literal("Global regeneration triggered, use triggerRegen status for progress"), true);
                 } else {
                     // Single chunk regen
                     ServerPlayer player = source.getPlayerOrException();
@@ -293,6 +303,52 @@ public class CommandList {
             LoggerProject.logDebug("010008", "Trigger Regen Command executed successfully");
             return 0;
         }
+
+        private static int executeStatus(CommandSourceStack source) {
+            OreClusterApi api = OreClusterApi.getInstance();
+            if(api == null) {
+                source.sendFailure(Component.literal("oreClusterApi not initialized at this time"));
+                return 1;
+            }
+
+            JsonObject status = api.getRegenStatus();
+            if(status.size() == 0) {
+                source.sendSuccess(() -> Component.literal("No dimensions are managed at this time"), false);
+                return 0;
+            }
+            source.sendSuccess(() -> Component.literal("Regeneration progress:"), false);
+            source.sendSuccess(() -> Component.literal(status.toString()), false);
+            LoggerProject.logInfo("010014", status.toString());
+            return 0;
+        }
+
+        private static int executeCancel(CommandSourceStack source) {
+            OreClusterApi api = OreClusterApi.getInstance();
+            if(api == null) {
+                source.sendFailure(Component.literal("oreClusterApi not initialized at this time"));
+                return 1;
+            }
+
+            int cancelled = api.cancelRegen();
+            if(cancelled == 0) {
+                source.sendFailure(Component.literal("No global regeneration is running"));
+                return 1;
+            }
+            source.sendSuccess(() -> Component.literal("Cancelled global regeneration in " + cancelled + " dimension(s)"), true);
+            return 0;
+        }
+
+        private static int executeRate(CommandSourceStack source, int chunksPerSecond) {
+            OreClusterApi api = OreClusterApi.getInstance();
+            if(api == null) {
+                source.sendFailure(Component.literal("oreClusterApi not initialized at this time"));
+                return 1;
+            }
+
+            api.setRegenRate(chunksPerSecond);
+            source.sendSuccess(() -> Component.literal("Running regeneration set to " + chunksPerSecond + " chunks per second"), true);
+            return 0;
+        }
     }
 
     //3. ADD CLUSTER
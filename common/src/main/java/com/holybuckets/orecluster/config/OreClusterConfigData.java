@@ -49,6 +49,8 @@ public class OreClusterConfigData implements BalmConfigData {
         public static final String DEF_REGENERATE_ORE_CLUSTER_UPGRADE_ITEMS = "default,minecraft:blaze_powder," +
             "minecraft:dragon_egg,minecraft:nether_star";
         public static final String DEF_ORE_CLUSTER_FILE_CONFIG_PATH = "config/HBOreClustersAndRegenConfigs.json";
+        public static final ConfigNumber<Integer> DEF_ORE_CLUSTER_TICK_BUDGET_MICROS = new ConfigNumber<>("oreClusterTickBudgetMicros", 5000, 100, 45000);
+        public static final ConfigNumber<Integer> DEF_ORE_CLUSTER_REGEN_CHUNKS_PER_SECOND = new ConfigNumber<>("oreClusterRegenChunksPerSecond", 40, 1, 2000);
 
         //Ranges
         public static final String DEF_MIN_ORE_CLUSTER_VOLUME = "0x0x0";
@@ -115,6 +117,12 @@ public class OreClusterConfigData implements BalmConfigData {
         @IgnoreConfig("Not implemented")
         public String regenerateOreClusterUpgradeItems = DEF_REGENERATE_ORE_CLUSTER_UPGRADE_ITEMS;
 
+        @Comment("Maximum time in microseconds the mod may spend generating ore clusters each server tick, shared across all dimensions. Work that does not fit is resumed on the next tick. A tick lasts 50000 microseconds; lower this value if the server lags while exploring new chunks")
+        public int oreClusterTickBudgetMicros = DEF_ORE_CLUSTER_TICK_BUDGET_MICROS.get();
+
+        @Comment("Number of cluster chunks per second that are queued for regeneration when a regeneration period ends, nearest to players first. Spreads regeneration over time instead of regenerating every cluster at once")
+        public int oreClusterRegenChunksPerSecond = DEF_ORE_CLUSTER_REGEN_CHUNKS_PER_SECOND.get();
+
 
 
     }
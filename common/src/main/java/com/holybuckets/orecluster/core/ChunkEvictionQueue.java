@@ -0,0 +1,127 @@
+package com.holybuckets.orecluster.core;
+
+import com.holybuckets.orecluster.core.model.ChunkKey;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongList;
+
+/**
+ * Class: ChunkEvictionQueue
+ * Description: Eviction stage for expired ManagedOreClusterChunks. An expired chunk is marked dirty and
+ *  waits here until its data is known to be persisted, only then may OreClusterManager drop it from memory.
+ *  Nothing blocks: persistence is confirmed by a completion signal instead of sleeping.
+ *
+ *  Only onSerialized confirms a chunk, the chunk's ManagedOreClusterChunk was written to chunk NBT after it
+ *  was marked. The mod's datastore save has no ordering with the vanilla chunk save and confirms nothing.
+ *  Chunks that see no signal within a timeout are handed back by takeTimedOut to be marked dirty again.
+ *
+ *  Confirmed chunks are polled in the order they were confirmed. Thread safe, chunk serialization
+ *  may run off the server thread.
+ *
+ *  #Methods
+ *  - markPendingSave: start evicting a chunk
+ *  - onSerialized: completion signal
+ *  - takeTimedOut: chunks still waiting for their save after a timeout
+ *  - pollConfirmed, retryConfirmed: next chunk that is safe to remove
+ *  - cancel: stop evicting a chunk, used when it is loaded again
+ */
+public class ChunkEvictionQueue {
+
+    private final Long2LongOpenHashMap pendingSave;     //chunkId -> tick marked
+    private final LongLinkedOpenHashSet confirmed;
+
+    public ChunkEvictionQueue()
+    {
+        this.pendingSave = new Long2LongOpenHashMap();
+        this.pendingSave.defaultReturnValue(Long.MIN_VALUE);
+        this.confirmed = new LongLinkedOpenHashSet();
+    }
+
+    /**
+     * @param chunkId
+     * @param currentTick
+     * @return false if the chunk is already being evicted
+     */
+    public synchronized boolean markPendingSave(long chunkId, long currentTick)
+    {
+        if(pendingSave.containsKey(chunkId) || confirmed.contains(chunkId)) return false;
+        pendingSave.put(chunkId, currentTick);
+        return true;
+    }
+
+    /**
+     * Signal that chunkId was serialized
+     * @param chunkId
+     */
+    public synchronized void onSerialized(long chunkId)
+    {
+        if(pendingSave.isEmpty()) return;
+        if(pendingSave.remove(chunkId) != Long.MIN_VALUE)
+            confirmed.add(chunkId);
+    }
+
+    /**
+     * Chunks marked more than timeoutTicks ago without being serialized. Each one stays pending and
+     * its timeout starts again at currentTick
+     * @param currentTick
+     * @param timeoutTicks
+     * @return ids of the timed out chunks
+     */
+    public synchronized LongList takeTimedOut(long currentTick, long timeoutTicks)
+    {
+        LongList timedOut = new LongArrayList();
+        if(pendingSave.isEmpty()) return timedOut;
+        for(Long2LongMap.Entry e : pendingSave.long2LongEntrySet()) {
+            if(currentTick - e.getLongValue() < timeoutTicks) continue;
+            timedOut.add(e.getLongKey());
+            e.setValue(currentTick);
+        }
+        return timedOut;
+    }
+
+    /**
+     * @return next chunk whose data is persisted or ChunkKey.NONE
+     */
+    public synchronized long pollConfirmed()
+    {
+        if(confirmed.isEmpty()) return ChunkKey.NONE;
+        return confirmed.removeFirstLong();
+    }
+
+    /**
+     * @param chunkId
+     * @return true if chunkId was being evicted
+     */
+    public synchronized boolean cancel(long chunkId) {
+        return (pendingSave.remove(chunkId) != Long.MIN_VALUE) | confirmed.remove(chunkId);
+    }
+
+    public synchronized int pendingSaveSize() {
+        return pendingSave.size();
+    }
+
+    public synchronized int confirmedSize() {
+        return confirmed.size();
+    }
+
+    public synchronized int size() {
+        return pendingSave.size() + confirmed.size();
+    }
+
+    /**
+     * Returns a confirmed chunk that could not be removed yet to the front of the queue
+     * @param chunkId
+     */
+    public synchronized void retryConfirmed(long chunkId) {
+        confirmed.addAndMoveToFirst(chunkId);
+    }
+
+    public synchronized void clear()
+    {
+        pendingSave.clear();
+        confirmed.clear();
+    }
+
+}
@@ -0,0 +1,298 @@
+package com.holybuckets.orecluster.core;
+
+import com.google.gson.JsonObject;
+import com.holybuckets.orecluster.LoggerProject;
+import com.holybuckets.orecluster.core.model.ChunkKey;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongList;
+
+import javax.annotation.Nullable;
+
+/**
+ * Class: ChunkKeyQueue
+ * Description: Thread safe, deduplicating priority queue of packed chunk keys for the OreClusterManager
+ *  pipeline queues. Chunks may be queued from chunk IO threads while the server thread polls.
+ *
+ *  Keys are held in insertion ordered buckets chosen by PlayerChunkPriority, nearest players first.
+ *  Without a priority source the queue is a plain FIFO. Each bucket maps key to its enqueue sequence and
+ *  a key to bucket index gives O(1) contains and remove; adding a key that is already queued is a no-op
+ *  counted in duplicatesSuppressed.
+ *
+ *  - Lazy: a polled key whose bucket has grown since it was queued is moved back to its new bucket
+ *  - Incremental: reprioritize() moves a bounded number of keys per call after players move
+ *  - Fairness: every FAIRNESS_POLL_PERIOD-th poll takes the oldest key in the queue regardless of
+ *  distance, so far chunks cannot starve
+ *  - Admission: once the queue reaches its high watermark new keys go to a compact FIFO backlog
+ *  instead of the priority buckets. When polls drain the queue to its low watermark the backlog is
+ *  re-admitted in one batch. Watermark crossings are logged and counted
+ */
+public class ChunkKeyQueue {
+
+    public static final String CLASS_ID = "011";
+
+    static final int FAIRNESS_POLL_PERIOD = 8;
+    private static final int MAX_REBUCKETS_PER_POLL = 4;
+
+    private final PlayerChunkPriority priority;
+    private final Long2LongLinkedOpenHashMap[] buckets;     //key -> enqueue sequence, in queue order
+    private final Long2IntOpenHashMap index;                //key -> bucket
+    private long nextSequence;
+    private int polls;
+    private long duplicatesSuppressed;
+
+    private int seenVersion;
+    private int sweepBucket;
+    private int sweepRemaining;
+
+    //Admission control
+    private final String name;
+    private final int highWatermark;
+    private final int lowWatermark;
+    private final LongLinkedOpenHashSet backlog;
+    private boolean throttled;
+    private long highWatermarkCrossings;
+    private long backlogAdmitted;
+
+    public ChunkKeyQueue() {
+        this("queue", null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param name used in watermark logs
+     * @param priority orders keys by distance to players, null for FIFO
+     * @param highWatermark size above which new keys are held in the backlog, low watermark is half
+     */
+    public ChunkKeyQueue(String name, @Nullable PlayerChunkPriority priority, int highWatermark)
+    {
+        this.name = name;
+        this.highWatermark = Math.max(1, highWatermark);
+        this.lowWatermark = this.highWatermark / 2;
+        this.backlog = new LongLinkedOpenHashSet();
+        this.priority = priority;
+        int n = (priority == null) ? 1 : PlayerChunkPriority.BUCKETS;
+        this.buckets = new Long2LongLinkedOpenHashMap[n];
+        for(int i = 0; i < n; i++)
+            buckets[i] = new Long2LongLinkedOpenHashMap();
+        this.index = new Long2IntOpenHashMap();
+        this.index.defaultReturnValue(-1);
+        this.seenVersion = (priority == null) ? 0 : priority.version();
+    }
+
+    private int bucketOf(long key) {
+        return (priority == null) ? 0 : priority.bucket(key);
+    }
+
+    private void push(int bucket, long key, long sequence) {
+        buckets[bucket].put(key, sequence);
+        index.put(key, bucket);
+    }
+
+    /**
+     * @param key
+     * @return false if key was already queued
+     */
+    public synchronized boolean add(long key)
+    {
+        if(index.containsKey(key) || backlog.contains(key)) {
+            duplicatesSuppressed++;
+            return false;
+        }
+
+        if(!throttled && index.size() >= highWatermark) {
+            throttled = true;
+            highWatermarkCrossings++;
+            LoggerProject.logWarning("011001", "Queue " + name + " reached high watermark " + highWatermark
+                + ", new chunks are held in backlog");
+        }
+
+        if(throttled) backlog.add(key);
+        else push(bucketOf(key), key, nextSequence++);
+        return true;
+    }
+
+    /**
+     * Re-admits the backlog in FIFO order once the queue drains to its low watermark
+     */
+    private void admitBacklog()
+    {
+        if(!throttled || index.size() > lowWatermark) return;
+        int admitted = 0;
+        while(!backlog.isEmpty() && index.size() < highWatermark) {
+            long key = backlog.removeFirstLong();
+            push(bucketOf(key), key, nextSequence++);
+            admitted++;
+        }
+        backlogAdmitted += admitted;
+        if(backlog.isEmpty()) {
+            throttled = false;
+            LoggerProject.logInfo("011002", "Queue " + name + " drained below low watermark " + lowWatermark
+                + ", backlog cleared");
+        }
+    }
+
+    /**
+     * @return the next key or ChunkKey.NONE if the queue is empty
+     */
+    public synchronized long poll()
+    {
+        admitBacklog();
+        if(index.isEmpty()) return ChunkKey.NONE;
+
+        int bucket;
+        if(++polls % FAIRNESS_POLL_PERIOD == 0) {
+            bucket = oldestBucket();
+        }
+        else
+        {
+            bucket = firstNonEmpty();
+            for(int i = 0; i < MAX_REBUCKETS_PER_POLL && buckets.length > 1; i++)
+            {
+                long key = buckets[bucket].firstLongKey();
+                int current = bucketOf(key);
+                if(current <= bucket) break;
+                push(current, key, buckets[bucket].removeFirstLong());
+                bucket = firstNonEmpty();
+            }
+        }
+
+        long key = buckets[bucket].firstLongKey();
+        buckets[bucket].removeFirstLong();
+        index.remove(key);
+        return key;
+    }
+
+    private int firstNonEmpty() {
+        for(int i = 0; i < buckets.length; i++) {
+            if(!buckets[i].isEmpty()) return i;
+        }
+        return -1;
+    }
+
+    private int oldestBucket()
+    {
+        int oldest = -1;
+        long oldestSequence = Long.MAX_VALUE;
+        for(int i = 0; i < buckets.length; i++) {
+            if(buckets[i].isEmpty()) continue;
+            long s = buckets[i].get(buckets[i].firstLongKey());
+            if(s < oldestSequence) { oldestSequence = s; oldest = i; }
+        }
+        return oldest;
+    }
+
+    /**
+     * Moves up to limit keys into their current bucket after players have moved, sweeping from the
+     * farthest bucket inwards. Call once per tick
+     * @param limit
+     */
+    public synchronized void reprioritize(int limit)
+    {
+        if(priority == null || index.isEmpty()) return;
+        if(seenVersion != priority.version()) {
+            seenVersion = priority.version();
+            sweepBucket = buckets.length - 1;
+            sweepRemaining = buckets[sweepBucket].size();
+        }
+
+        while(limit > 0 && sweepBucket > 0)
+        {
+            if(sweepRemaining == 0 || buckets[sweepBucket].isEmpty()) {
+                sweepBucket--;
+                sweepRemaining = (sweepBucket > 0) ? buckets[sweepBucket].size() : 0;
+                continue;
+            }
+            long key = buckets[sweepBucket].firstLongKey();
+            long sequence = buckets[sweepBucket].removeFirstLong();
+            push(bucketOf(key), key, sequence);
+            sweepRemaining--;
+            limit--;
+        }
+    }
+
+    /**
+     * Removes key from the queue, O(1)
+     * @param key
+     * @return true if key was queued
+     */
+    public synchronized boolean remove(long key)
+    {
+        if(backlog.remove(key)) return true;
+        int bucket = index.remove(key);
+        if(bucket < 0) return false;
+        buckets[bucket].remove(key);
+        return true;
+    }
+
+    public synchronized boolean contains(long key) {
+        return index.containsKey(key) || backlog.contains(key);
+    }
+
+    /**
+     * @param limit maximum number of keys to return
+     * @return copy of the first keys in priority order
+     */
+    public synchronized LongList peek(int limit)
+    {
+        LongList result = new LongArrayList(Math.min(index.size(), limit));
+        for(int b = 0; b < buckets.length && result.size() < limit; b++)
+        {
+            LongIterator it = buckets[b].keySet().iterator();
+            while(it.hasNext() && result.size() < limit)
+                result.add(it.nextLong());
+        }
+        return result;
+    }
+
+    /**
+     * @return number of keys queued, including the backlog
+     */
+    public synchronized int size() {
+        return index.size() + backlog.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return index.isEmpty() && backlog.isEmpty();
+    }
+
+    public synchronized int backlogSize() {
+        return backlog.size();
+    }
+
+    /**
+     * @return number of add() calls ignored because the key was already queued
+     */
+    public synchronized long duplicatesSuppressed() {
+        return duplicatesSuppressed;
+    }
+
+    /**
+     * @return admission control state and counters for healthCheckStatistics
+     */
+    public synchronized JsonObject admissionToJson()
+    {
+        JsonObject json = new JsonObject();
+        json.addProperty("highWatermark", highWatermark);
+        json.addProperty("lowWatermark", lowWatermark);
+        json.addProperty("throttled", throttled);
+        json.addProperty("backlog", backlog.size());
+        json.addProperty("highWatermarkCrossings", highWatermarkCrossings);
+        json.addProperty("backlogAdmitted", backlogAdmitted);
+        return json;
+    }
+
+    public synchronized void clear()
+    {
+        for(Long2LongLinkedOpenHashMap bucket : buckets)
+            bucket.clear();
+        index.clear();
+        backlog.clear();
+        throttled = false;
+        sweepBucket = 0;
+        sweepRemaining = 0;
+    }
+
+}
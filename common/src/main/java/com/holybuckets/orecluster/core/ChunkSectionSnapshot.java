@@ -0,0 +1,76 @@
+package com.holybuckets.orecluster.core;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.PalettedContainer;
+
+/**
+ * Class: ChunkSectionSnapshot
+ * Description: Private copies of the block states of a vertical range of one chunk's sections, taken on
+ *  the server thread so cluster generation can read blocks on a pipeline worker while the live
+ *  PalettedContainers keep changing. Sections that held only air are not copied.
+ *
+ *  Reads follow LevelChunk.getBlockState: x and z wrap into the chunk, positions outside the copied
+ *  range read as air.
+ *
+ *  Immutable once taken.
+ *
+ *  #Methods
+ *  - of: copy the sections covering a block Y range, server thread only
+ *  - getBlockState, getPos: reads, any thread
+ */
+public class ChunkSectionSnapshot {
+
+    public static final String CLASS_ID = "023";
+
+    private static final BlockState AIR = Blocks.AIR.defaultBlockState();
+
+    private final ChunkPos pos;
+    private final int minSectionY;
+    private final PalettedContainer<BlockState>[] sections;
+
+    private ChunkSectionSnapshot(ChunkPos pos, int minSectionY, PalettedContainer<BlockState>[] sections) {
+        this.pos = pos;
+        this.minSectionY = minSectionY;
+        this.sections = sections;
+    }
+
+    /**
+     * Copies the sections of chunk covering minY to maxY. Must be called on the server thread
+     * @param chunk
+     * @param minY lowest block Y read from the snapshot
+     * @param maxY highest block Y read from the snapshot
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static ChunkSectionSnapshot of(LevelChunk chunk, int minY, int maxY)
+    {
+        int minSectionY = Math.max(minY >> 4, chunk.getMinSection());
+        int maxSectionY = Math.min(maxY >> 4, chunk.getMaxSection() - 1);
+        int count = Math.max(0, maxSectionY - minSectionY + 1);
+
+        PalettedContainer<BlockState>[] sections = new PalettedContainer[count];
+        LevelChunkSection[] live = chunk.getSections();
+        for(int i = 0; i < count; i++) {
+            LevelChunkSection section = live[chunk.getSectionIndexFromSectionY(minSectionY + i)];
+            if(section != null && !section.hasOnlyAir()) sections[i] = section.getStates().copy();
+        }
+        return new ChunkSectionSnapshot(chunk.getPos(), minSectionY, sections);
+    }
+
+    public ChunkPos getPos() {
+        return pos;
+    }
+
+    public BlockState getBlockState(BlockPos blockPos)
+    {
+        int i = (blockPos.getY() >> 4) - minSectionY;
+        if(i < 0 || i >= sections.length || sections[i] == null) return AIR;
+        return sections[i].get(blockPos.getX() & 15, blockPos.getY() & 15, blockPos.getZ() & 15);
+    }
+
+}
@@ -0,0 +1,186 @@
+package com.holybuckets.orecluster.core;
+
+import com.holybuckets.orecluster.LoggerProject;
+import com.holybuckets.orecluster.core.model.ChunkKey;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerChunkCache;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.levelgen.Heightmap;
+import net.minecraft.world.level.lighting.LevelLightEngine;
+import net.minecraft.world.level.lighting.LightEngine;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class: ChunkSectionWriter
+ * Description: Writes every pending cluster block state of one chunk in a single pass, directly into the
+ *  chunk's LevelChunkSections. Updates are grouped by section so each section's PalettedContainer is
+ *  acquired once, then the chunk's heightmaps, lighting and client sync are reconciled once for the
+ *  positions that actually changed.
+ *
+ *  Ore clusters only swap solid blocks for other solid blocks, so neighbour updates, block callbacks and
+ *  physics that Level.setBlock performs are skipped. Lighting is only rechecked where the old and new state
+ *  differ in light properties and heightmaps ignore positions below their surface.
+ *
+ *  Writes are invisible to OreClusterBlockStateTracker, which would otherwise count them as worldgen ores.
+ *
+ *  Clusters are built around a source position and may reach into neighbouring chunks. Updates are split
+ *  by the chunk that owns each position and each group is written into its owning LevelChunk. Positions
+ *  in a neighbour that is not loaded when the cluster manifests are skipped, never loading or generating
+ *  the neighbour from the server thread; that part of the cluster is simply not placed.
+ *
+ *  #Methods
+ *  - write: apply all updates of a cluster chunk to loaded chunks on the server thread
+ */
+public class ChunkSectionWriter {
+
+    public static final String CLASS_ID = "012";
+
+    private ChunkSectionWriter() {}
+
+    /**
+     * Applies updates of a cluster chunk, each position is written into the chunk that owns it.
+     * Must be called on the server thread
+     * @param level
+     * @param chunk chunk the updates belong to
+     * @param updates target state mapped to world positions, mostly inside chunk
+     * @return number of blocks changed, -1 if some updates could not be written. Blocks written
+     *  before the failure are still reconciled, retrying skips them as unchanged
+     */
+    public static int write(Level level, LevelChunk chunk, Map<BlockState, ? extends Collection<BlockPos>> updates)
+    {
+        if(chunk == null || updates.isEmpty()) return 0;
+
+        //1. Group by owning chunk
+        final long ownKey = ChunkKey.of(chunk.getPos());
+        Long2ObjectMap<List<Pair<BlockPos, BlockState>>> byChunk = new Long2ObjectOpenHashMap<>();
+        for(Map.Entry<BlockState, ? extends Collection<BlockPos>> e : updates.entrySet())
+        {
+            BlockState state = e.getKey();
+            for(BlockPos pos : e.getValue())
+                byChunk.computeIfAbsent(ChunkKey.of(pos), k -> new ArrayList<>()).add(Pair.of(pos, state));
+        }
+
+        int changed = 0;
+        boolean failed = false;
+        for(Long2ObjectMap.Entry<List<Pair<BlockPos, BlockState>>> e : byChunk.long2ObjectEntrySet())
+        {
+            long key = e.getLongKey();
+            LevelChunk owner = (key == ownKey) ? chunk
+                : level.getChunkSource().getChunkNow(ChunkKey.x(key), ChunkKey.z(key));
+            if(owner == null) continue;
+            int n = writeChunk(level, owner, e.getValue());
+            if(n < 0) failed = true;
+            else changed += n;
+        }
+        return failed ? -1 : changed;
+    }
+
+    /**
+     * Writes updates into one chunk's sections, positions outside the chunk are skipped
+     */
+    private static int writeChunk(Level level, LevelChunk chunk, List<Pair<BlockPos, BlockState>> updates)
+    {
+        //1. Group by section index
+        ChunkPos chunkPos = chunk.getPos();
+        Int2ObjectMap<List<Pair<BlockPos, BlockState>>> bySection = new Int2ObjectOpenHashMap<>();
+        for(Pair<BlockPos, BlockState> update : updates)
+        {
+            BlockPos pos = update.getLeft();
+            if(pos.getX() < chunkPos.getMinBlockX() || pos.getX() > chunkPos.getMaxBlockX()
+                || pos.getZ() < chunkPos.getMinBlockZ() || pos.getZ() > chunkPos.getMaxBlockZ()) continue;
+            int sectionIndex = chunk.getSectionIndex(pos.getY());
+            if(sectionIndex < 0 || sectionIndex >= chunk.getSectionsCount()) continue;
+            bySection.computeIfAbsent(sectionIndex, k -> new ArrayList<>()).add(update);
+        }
+
+        //2. Write each section once, remember what changed
+        LevelChunkSection[] sections = chunk.getSections();
+        List<BlockPos> changedPos = new ArrayList<>();
+        List<BlockState> changedOld = new ArrayList<>();
+        List<BlockState> changedNew = new ArrayList<>();
+        List<BlockPos> emptinessChanged = new ArrayList<>();
+
+        boolean failed = false;
+        OreClusterBlockStateTracker.suppressTracking(true);
+        try {
+            for(Int2ObjectMap.Entry<List<Pair<BlockPos, BlockState>>> e : bySection.int2ObjectEntrySet())
+            {
+                LevelChunkSection section = sections[e.getIntKey()];
+                List<Pair<BlockPos, BlockState>> list = e.getValue();
+                boolean wasEmpty = section.hasOnlyAir();
+
+                section.acquire();
+                try {
+                    for(Pair<BlockPos, BlockState> update : list)
+                    {
+                        BlockPos pos = update.getLeft();
+                        BlockState state = update.getRight();
+                        BlockState old = section.setBlockState(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15, state, false);
+                        if(old == state) continue;
+                        changedPos.add(pos);
+                        changedOld.add(old);
+                        changedNew.add(state);
+                    }
+                } finally {
+                    section.release();
+                    if(wasEmpty != section.hasOnlyAir())
+                        emptinessChanged.add(list.get(0).getLeft());
+                }
+            }
+        }
+        catch (Exception ex) {
+            LoggerProject.logError("012001", "Error writing cluster blocks to chunk " + chunk.getPos() + ": " + ex.getMessage());
+            failed = true;
+        }
+        finally {
+            OreClusterBlockStateTracker.suppressTracking(false);
+        }
+
+        if(changedPos.isEmpty() && emptinessChanged.isEmpty()) return failed ? -1 : 0;
+
+        //3. Reconcile block entities, heightmaps, lighting and client sync once for the chunk
+        LevelLightEngine light = level.getChunkSource().getLightEngine();
+        ServerChunkCache serverChunks = (level.getChunkSource() instanceof ServerChunkCache)
+            ? (ServerChunkCache) level.getChunkSource() : null;
+        for(BlockPos pos : emptinessChanged) {
+            int sectionIndex = chunk.getSectionIndex(pos.getY());
+            light.updateSectionStatus(pos, sections[sectionIndex].hasOnlyAir());
+        }
+
+        for(int i = 0; i < changedPos.size(); i++)
+        {
+            BlockPos pos = changedPos.get(i);
+            BlockState old = changedOld.get(i);
+            BlockState state = changedNew.get(i);
+
+            if(old.hasBlockEntity() && !state.is(old.getBlock()))
+                chunk.removeBlockEntity(pos);
+
+            for(Map.Entry<Heightmap.Types, Heightmap> hm : chunk.getHeightmaps())
+                hm.getValue().update(pos.getX() & 15, pos.getY(), pos.getZ() & 15, state);
+
+            if(LightEngine.hasDifferentLightProperties(chunk, pos, old, state))
+                light.checkBlock(pos);
+
+            if(serverChunks != null)
+                serverChunks.blockChanged(pos);
+        }
+
+        chunk.setUnsaved(true);
+        return failed ? -1 : changedPos.size();
+    }
+
+}
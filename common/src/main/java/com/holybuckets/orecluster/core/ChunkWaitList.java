@@ -0,0 +1,155 @@
+package com.holybuckets.orecluster.core;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import java.util.function.BiConsumer;
+
+import static com.holybuckets.orecluster.core.OreClusterPipeline.Stage;
+
+/**
+ * Class: ChunkWaitList
+ * Description: Parks pipeline work for chunks that cannot make progress yet, so workers do not
+ *  poll and requeue them every tick.
+ *
+ *  - park: chunk is not loaded, work waits until OreClusterManager receives its load signal
+ *  - defer: chunk is loaded but not yet fully loaded or editable, work is retried after a number of ticks
+ *
+ *  Each chunk holds a bitmask of the stages waiting on it so one load signal releases all of them.
+ *  Thread safe, chunk load signals may arrive off the server thread.
+ *
+ *  #Methods
+ *  - park, release: wait on and signal a chunk load
+ *  - defer, tick: wait a number of ticks and collect chunks whose delay expired
+ *  - remove: drop all waiting work for a chunk, used when a chunk is evicted
+ */
+public class ChunkWaitList {
+
+    /** Deferred retries are bucketed by tick modulo this size, larger delays are clamped **/
+    static final int MAX_DEFER_TICKS = 64;
+
+    private final Long2IntOpenHashMap parked;
+    private final Long2IntOpenHashMap[] deferred;
+    private int deferredCount;
+    private long lastTick = -1;
+
+    public ChunkWaitList()
+    {
+        this.parked = new Long2IntOpenHashMap();
+        this.deferred = new Long2IntOpenHashMap[MAX_DEFER_TICKS];
+        for(int i = 0; i < MAX_DEFER_TICKS; i++)
+            this.deferred[i] = new Long2IntOpenHashMap();
+    }
+
+    private static int bit(Stage stage) {
+        return 1 << stage.ordinal();
+    }
+
+    /**
+     * Park stage work for chunkId until the chunk is loaded
+     * @param chunkId
+     * @param stage
+     */
+    public synchronized void park(long chunkId, Stage stage) {
+        parked.put(chunkId, parked.get(chunkId) | bit(stage));
+    }
+
+    /**
+     * Removes and returns all stages parked on chunkId
+     * @param chunkId
+     * @param consumer accepts (chunkId, stage) for each stage that was waiting
+     * @return true if any work was released
+     */
+    public boolean release(long chunkId, BiConsumer<Long, Stage> consumer)
+    {
+        int mask;
+        synchronized (this) {
+            mask = parked.remove(chunkId);
+        }
+        forEachStage(chunkId, mask, consumer);
+        return mask != 0;
+    }
+
+    /**
+     * Retry stage work for chunkId after delayTicks
+     * @param chunkId
+     * @param stage
+     * @param currentTick
+     * @param delayTicks clamped to [1, MAX_DEFER_TICKS-1]
+     */
+    public synchronized void defer(long chunkId, Stage stage, long currentTick, int delayTicks)
+    {
+        int delay = Math.max(1, Math.min(MAX_DEFER_TICKS - 1, delayTicks));
+        Long2IntOpenHashMap slot = deferred[(int) ((currentTick + delay) % MAX_DEFER_TICKS)];
+        int prev = slot.get(chunkId);
+        if(prev == 0) deferredCount++;
+        slot.put(chunkId, prev | bit(stage));
+    }
+
+    /**
+     * Collects deferred work that is due at currentTick, including any ticks skipped since the last call
+     * @param currentTick
+     * @param consumer accepts (chunkId, stage) for each stage that is due
+     */
+    public void tick(long currentTick, BiConsumer<Long, Stage> consumer)
+    {
+        Long2IntOpenHashMap due = new Long2IntOpenHashMap();
+        synchronized (this)
+        {
+            if(deferredCount == 0) { lastTick = currentTick; return; }
+            long from = (lastTick < 0 || currentTick - lastTick > MAX_DEFER_TICKS) ? currentTick - MAX_DEFER_TICKS + 1 : lastTick + 1;
+            for(long t = from; t <= currentTick; t++) {
+                Long2IntOpenHashMap slot = deferred[(int) (t % MAX_DEFER_TICKS)];
+                if(slot.isEmpty()) continue;
+                for(Long2IntMap.Entry e : slot.long2IntEntrySet())
+                    due.put(e.getLongKey(), due.get(e.getLongKey()) | e.getIntValue());
+                deferredCount -= slot.size();
+                slot.clear();
+            }
+            lastTick = currentTick;
+        }
+
+        for(Long2IntMap.Entry e : due.long2IntEntrySet())
+            forEachStage(e.getLongKey(), e.getIntValue(), consumer);
+    }
+
+    /**
+     * Drop all parked and deferred work for chunkId
+     * @param chunkId
+     */
+    public synchronized void remove(long chunkId)
+    {
+        parked.remove(chunkId);
+        for(Long2IntOpenHashMap slot : deferred) {
+            if(slot.remove(chunkId) != 0) deferredCount--;
+        }
+    }
+
+    public synchronized boolean isParked(long chunkId) {
+        return parked.containsKey(chunkId);
+    }
+
+    public synchronized int parkedSize() {
+        return parked.size();
+    }
+
+    public synchronized int deferredSize() {
+        return deferredCount;
+    }
+
+    public synchronized void clear()
+    {
+        parked.clear();
+        for(Long2IntOpenHashMap slot : deferred) slot.clear();
+        deferredCount = 0;
+    }
+
+    private static void forEachStage(long chunkId, int mask, BiConsumer<Long, Stage> consumer)
+    {
+        if(mask == 0) return;
+        for(Stage stage : Stage.values()) {
+            if((mask & bit(stage)) != 0) consumer.accept(chunkId, stage);
+        }
+    }
+
+}
@@ -0,0 +1,270 @@
+package com.holybuckets.orecluster.core;
+
+import com.holybuckets.orecluster.config.model.OreClusterConfigModel.OreClusterId;
+import com.holybuckets.orecluster.core.model.ChunkKey;
+import com.holybuckets.orecluster.core.model.ChunkKeySet;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Class: ClusterSpatialIndex
+ * Description: Per level spatial index of ore cluster source positions, keyed by OreClusterId.
+ *  Clusters are bucketed into a grid of 32x32 chunk cells (the ChunkKeySet region), each cell maps
+ *  chunkId to the packed BlockPos of the cluster in that chunk. Queries only visit cells that can
+ *  hold an answer and never touch ManagedOreClusterChunk objects.
+ *
+ *  - nearest: rings of cells are searched outward from the query until the next ring is further
+ *  away than the k-th best hit
+ *  - withinRadius: only cells intersecting the radius are visited, or only occupied cells when
+ *  they are fewer
+ *
+ *  Thread safe.
+ *
+ *  #Methods
+ *  - put, remove: maintained by OreClusterManager as cluster positions are placed or dropped
+ *  - nearest: k nearest clusters of the given types
+ *  - withinRadius: every cluster of the given types within a block radius
+ *  - position: indexed position of one chunk's cluster
+ */
+public class ClusterSpatialIndex {
+
+    public static final String CLASS_ID = "021";
+
+    private static final int CELL_BLOCKS = ChunkKeySet.REGION_SIZE * 16;
+
+    /** OreClusterId -> cell key -> (chunkId -> packed BlockPos) **/
+    private final Map<OreClusterId, Long2ObjectOpenHashMap<Long2LongOpenHashMap>> grids = new HashMap<>();
+    private int size;
+    //Bounds of occupied cells, valid while size > 0
+    private int minCellX = Integer.MAX_VALUE, maxCellX = Integer.MIN_VALUE;
+    private int minCellZ = Integer.MAX_VALUE, maxCellZ = Integer.MIN_VALUE;
+
+    /**
+     * One query result
+     */
+    public static class Hit {
+        public final OreClusterId oreType;
+        public final long chunkId;
+        public final BlockPos position;
+        public final double distanceSqr;
+
+        Hit(OreClusterId oreType, long chunkId, long packedPos, double distanceSqr) {
+            this.oreType = oreType;
+            this.chunkId = chunkId;
+            this.position = BlockPos.of(packedPos);
+            this.distanceSqr = distanceSqr;
+        }
+    }
+
+    /**
+     * Adds or moves the cluster of oreType in chunkId
+     * @param oreType
+     * @param chunkId
+     * @param pos cluster source position
+     */
+    public synchronized void put(OreClusterId oreType, long chunkId, BlockPos pos)
+    {
+        if(oreType == null || pos == null) return;
+        long cell = ChunkKeySet.regionOf(chunkId);
+        Long2LongOpenHashMap entries = grids.computeIfAbsent(oreType, k -> new Long2ObjectOpenHashMap<>())
+            .computeIfAbsent(cell, k -> new Long2LongOpenHashMap());
+        if(!entries.containsKey(chunkId)) size++;
+        entries.put(chunkId, pos.asLong());
+
+        int cx = ChunkKey.x(cell), cz = ChunkKey.z(cell);
+        minCellX = Math.min(minCellX, cx); maxCellX = Math.max(maxCellX, cx);
+        minCellZ = Math.min(minCellZ, cz); maxCellZ = Math.max(maxCellZ, cz);
+    }
+
+    /**
+     * @param oreType
+     * @param chunkId
+     * @return true if the cluster was indexed
+     */
+    public synchronized boolean remove(OreClusterId oreType, long chunkId)
+    {
+        Long2ObjectOpenHashMap<Long2LongOpenHashMap> grid = grids.get(oreType);
+        if(grid == null) return false;
+        long cell = ChunkKeySet.regionOf(chunkId);
+        Long2LongOpenHashMap entries = grid.get(cell);
+        if(entries == null || !entries.containsKey(chunkId)) return false;
+        entries.remove(chunkId);
+        if(entries.isEmpty()) grid.remove(cell);
+        size--;
+        return true;
+    }
+
+    /**
+     * @param oreType
+     * @param chunkId
+     * @return indexed cluster position of oreType in chunkId, null if none
+     */
+    public synchronized BlockPos position(OreClusterId oreType, long chunkId)
+    {
+        Long2ObjectOpenHashMap<Long2LongOpenHashMap> grid = grids.get(oreType);
+        if(grid == null) return null;
+        Long2LongOpenHashMap entries = grid.get(ChunkKeySet.regionOf(chunkId));
+        if(entries == null || !entries.containsKey(chunkId)) return null;
+        return BlockPos.of(entries.get(chunkId));
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear()
+    {
+        grids.clear();
+        size = 0;
+        minCellX = minCellZ = Integer.MAX_VALUE;
+        maxCellX = maxCellZ = Integer.MIN_VALUE;
+    }
+
+    /**
+     * @param pos query position
+     * @param oreTypes types to search, null for all
+     * @param k maximum number of results
+     * @return up to k clusters ordered nearest first
+     */
+    public synchronized List<Hit> nearest(BlockPos pos, Collection<OreClusterId> oreTypes, int k)
+    {
+        List<Hit> result = new ArrayList<>();
+        if(k <= 0 || size == 0) return result;
+
+        List<Map.Entry<OreClusterId, Long2ObjectOpenHashMap<Long2LongOpenHashMap>>> searched = grids(oreTypes);
+        if(searched.isEmpty()) return result;
+
+        //Max heap of the best k hits so far
+        PriorityQueue<Hit> best = new PriorityQueue<>(k, Comparator.comparingDouble((Hit h) -> h.distanceSqr).reversed());
+        int qx = Math.floorDiv(pos.getX(), CELL_BLOCKS);
+        int qz = Math.floorDiv(pos.getZ(), CELL_BLOCKS);
+        int maxRing = Math.max(Math.max(Math.abs(qx - minCellX), Math.abs(qx - maxCellX)),
+            Math.max(Math.abs(qz - minCellZ), Math.abs(qz - maxCellZ)));
+
+        //Sparse clusters spread far apart: visiting occupied cells is cheaper than walking empty rings
+        long occupiedCells = 0;
+        for(Map.Entry<OreClusterId, Long2ObjectOpenHashMap<Long2LongOpenHashMap>> g : searched) occupiedCells += g.getValue().size();
+        long ringCells = (2L * maxRing + 1) * (2L * maxRing + 1);
+        if(ringCells > occupiedCells * 4) {
+            for(Map.Entry<OreClusterId, Long2ObjectOpenHashMap<Long2LongOpenHashMap>> g : searched)
+                for(Long2LongOpenHashMap entries : g.getValue().values())
+                    offerCell(g.getKey(), entries, pos, k, best);
+            maxRing = -1;
+        }
+
+        for(int ring = 0; ring <= maxRing; ring++)
+        {
+            if(best.size() == k) {
+                double ringMin = (double) (ring - 1) * CELL_BLOCKS;
+                if(ring > 0 && ringMin * ringMin > best.peek().distanceSqr) break;
+            }
+
+            for(int dx = -ring; dx <= ring; dx++) {
+                boolean edgeColumn = (dx == -ring || dx == ring);
+                int step = edgeColumn ? 1 : 2 * ring;
+                for(int dz = -ring; dz <= ring; dz += Math.max(1, step)) {
+                    long cell = ChunkKey.of(qx + dx, qz + dz);
+                    for(Map.Entry<OreClusterId, Long2ObjectOpenHashMap<Long2LongOpenHashMap>> g : searched)
+                        offerCell(g.getKey(), g.getValue().get(cell), pos, k, best);
+                }
+            }
+        }
+
+        while(!best.isEmpty()) result.add(best.poll());
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * @param pos query position
+     * @param oreTypes types to search, null for all
+     * @param radius block radius
+     * @return every cluster within radius, nearest first
+     */
+    public synchronized List<Hit> withinRadius(BlockPos pos, Collection<OreClusterId> oreTypes, int radius)
+    {
+        List<Hit> result = new ArrayList<>();
+        if(radius < 0 || size == 0) return result;
+        double radiusSqr = (double) radius * radius;
+
+        int x0 = Math.floorDiv(pos.getX() - radius, CELL_BLOCKS), x1 = Math.floorDiv(pos.getX() + radius, CELL_BLOCKS);
+        int z0 = Math.floorDiv(pos.getZ() - radius, CELL_BLOCKS), z1 = Math.floorDiv(pos.getZ() + radius, CELL_BLOCKS);
+        x0 = Math.max(x0, minCellX); x1 = Math.min(x1, maxCellX);
+        z0 = Math.max(z0, minCellZ); z1 = Math.min(z1, maxCellZ);
+        long boxCells = (x1 < x0 || z1 < z0) ? 0 : (long) (x1 - x0 + 1) * (z1 - z0 + 1);
+
+        for(Map.Entry<OreClusterId, Long2ObjectOpenHashMap<Long2LongOpenHashMap>> g : grids(oreTypes))
+        {
+            Long2ObjectOpenHashMap<Long2LongOpenHashMap> grid = g.getValue();
+            if(boxCells == 0) break;
+            if(boxCells <= grid.size()) {
+                for(int cx = x0; cx <= x1; cx++)
+                    for(int cz = z0; cz <= z1; cz++)
+                        collectCell(g.getKey(), grid.get(ChunkKey.of(cx, cz)), pos, radiusSqr, result);
+            } else {
+                for(Long2ObjectMap.Entry<Long2LongOpenHashMap> cell : grid.long2ObjectEntrySet()) {
+                    int cx = ChunkKey.x(cell.getLongKey()), cz = ChunkKey.z(cell.getLongKey());
+                    if(cx < x0 || cx > x1 || cz < z0 || cz > z1) continue;
+                    collectCell(g.getKey(), cell.getValue(), pos, radiusSqr, result);
+                }
+            }
+        }
+
+        result.sort(Comparator.comparingDouble(h -> h.distanceSqr));
+        return result;
+    }
+
+    private List<Map.Entry<OreClusterId, Long2ObjectOpenHashMap<Long2LongOpenHashMap>>> grids(Collection<OreClusterId> oreTypes)
+    {
+        List<Map.Entry<OreClusterId, Long2ObjectOpenHashMap<Long2LongOpenHashMap>>> searched = new ArrayList<>();
+        for(Map.Entry<OreClusterId, Long2ObjectOpenHashMap<Long2LongOpenHashMap>> g : grids.entrySet()) {
+            if(oreTypes != null && !oreTypes.contains(g.getKey())) continue;
+            if(!g.getValue().isEmpty()) searched.add(g);
+        }
+        return searched;
+    }
+
+    private static void offerCell(OreClusterId oreType, Long2LongOpenHashMap entries, BlockPos pos, int k, PriorityQueue<Hit> best)
+    {
+        if(entries == null) return;
+        for(Long2LongMap.Entry e : entries.long2LongEntrySet())
+        {
+            double d = distSqr(e.getLongValue(), pos);
+            if(best.size() < k) best.add(new Hit(oreType, e.getLongKey(), e.getLongValue(), d));
+            else if(d < best.peek().distanceSqr) {
+                best.poll();
+                best.add(new Hit(oreType, e.getLongKey(), e.getLongValue(), d));
+            }
+        }
+    }
+
+    private static void collectCell(OreClusterId oreType, Long2LongOpenHashMap entries, BlockPos pos, double radiusSqr, List<Hit> result)
+    {
+        if(entries == null) return;
+        for(Long2LongMap.Entry e : entries.long2LongEntrySet()) {
+            double d = distSqr(e.getLongValue(), pos);
+            if(d <= radiusSqr) result.add(new Hit(oreType, e.getLongKey(), e.getLongValue(), d));
+        }
+    }
+
+    private static double distSqr(long packedPos, BlockPos pos)
+    {
+        double dx = BlockPos.getX(packedPos) - pos.getX();
+        double dy = BlockPos.getY(packedPos) - pos.getY();
+        double dz = BlockPos.getZ(packedPos) - pos.getZ();
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+}
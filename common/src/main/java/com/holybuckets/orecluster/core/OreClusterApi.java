@@ -8,8 +8,13 @@ import com.holybuckets.foundation.exception.InvalidId;
 import com.holybuckets.orecluster.LoggerProject;
 import com.holybuckets.orecluster.ModRealTimeConfig;
 import com.holybuckets.orecluster.config.model.OreClusterConfigModel;
+import com.holybuckets.orecluster.core.model.ChunkKey;
+import com.holybuckets.orecluster.core.model.ClusterFootprint;
+import com.holybuckets.orecluster.core.model.ClusterLayout;
 import com.holybuckets.orecluster.core.model.ManagedOreClusterChunk;
 import com.holybuckets.orecluster.core.model.OreClusterInfo;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.LevelAccessor;
@@ -193,68 +198,78 @@ public class OreClusterApi {
         OreClusterManager manager = managers.get(level);
         if(manager == null) return null;
 
-        //2. Get list of all oreClusters
-        Map<OreClusterId, Set<String>> clusters = manager.getExistingClustersByType();
-
-        LoggerProject.logInfo(null, "008000", "Found " + clusters.size() +
-         " clusters in level: " + HBUtil.LevelUtil.toLevelId(level) + " with oreType: " + ((oreType==null) ? "any" : oreType) );
-
-        //3. Create list of all valid Clusters from each chunk, filtering by oreType if necessary
-        Set<String> validClusterChunkIds = new HashSet<>();
-        if(oreType == null)
-        {
-            for(OreClusterId clusterType : clusters.keySet()) {
-                validClusterChunkIds.addAll(clusters.get(clusterType));
+        //2. Restrict the search to cluster types of oreType
+        Set<OreClusterId> oreTypes = null;
+        if(oreType != null) {
+            oreTypes = new HashSet<>();
+            for(OreClusterId id : manager.getExistingClustersByType().keySet()) {
+                if(id.getBlock().equals(oreType)) oreTypes.add(id);
             }
         }
-        else
-        {
-            Set<OreClusterId> idsForOre = modConfig.getAllOreConfigIdsByOre(oreType);
-            clusters.forEach( (k,v) -> {
-                if(v == null) return;
-                if(idsForOre.contains(k)) validClusterChunkIds.addAll(v);
-            });
-        }
 
-        //4. Add clusters to clusterInfo
-        List<OreClusterInfo> clusterInfo = new ArrayList<>();
-        for(String chunkId : validClusterChunkIds)
-        {
-            ManagedOreClusterChunk clusterChunk = manager.getManagedOreClusterChunk(chunkId);
-            if(clusterChunk != null && clusterChunk.hasClusters()) {
-                clusterChunk.getClusterTypes().forEach((k,v) -> {
-                    if(v == null) return;
-                    if( oreType != null && !k.getBlock().equals(oreType) ) return;
-                    clusterInfo.add(new OreClusterInfo(clusterChunk, k));
-                });
-            }
-        }
+        //3. Nearest clusters from the spatial index, nearest first
+        List<ClusterSpatialIndex.Hit> hits = manager.getClusterIndex().nearest(pos, oreTypes, limit);
+        List<OreClusterInfo> sortedClusters = toClusterInfo(level, manager, hits);
 
-        LoggerProject.logInfo(null, "008001", "Found " + clusterInfo.size() + " clusters of type: " + oreType);
+        LoggerProject.logInfo(null, "008002", "Found " + sortedClusters.size() + " clusters of type: "
+            + ((oreType==null) ? "any" : oreType) + " nearest to: " + pos + " with limit " + limit);
 
-        //4. Determine distance of each cluster from pos
-        for(OreClusterInfo cluster : clusterInfo) {
-            cluster.calcPointDistance(pos);
-        }
+        return sortedClusters;
+    }
+
+    /**
+     * Locate every Ore Cluster within radius blocks of pos, optionally filtering by oreType
+     * @param level
+     * @param pos
+     * @param oreType
+     * @param radius
+     * @return clusters nearest first, null if level or pos is null, or radius is negative
+     */
+    public List<OreClusterInfo> locateOreClustersWithinRadius(LevelAccessor level, BlockPos pos, Block oreType, int radius)
+    {
+        if(level == null) return null;
+        if(pos == null) return null;
+        if(radius < 0) return null;
 
-        //5. Sort clusters by distance
+        OreClusterManager manager = managers.get(level);
+        if(manager == null) return null;
 
-        Comparator<OreClusterInfo> clusterComparator = Comparator.comparing(c -> c.pointDistance);
-        List<OreClusterInfo> sortedClusters = clusterInfo.stream()
-            .sorted( clusterComparator )
-            .limit(limit)
-            .toList();
+        Set<OreClusterId> oreTypes = null;
+        if(oreType != null) {
+            oreTypes = new HashSet<>();
+            for(OreClusterId id : manager.getExistingClustersByType().keySet()) {
+                if(id.getBlock().equals(oreType)) oreTypes.add(id);
+            }
+        }
 
-        LoggerProject.logInfo(null, "008002", "Sorted clusters by distance from: " + pos + " with limit  " + limit);
+        List<ClusterSpatialIndex.Hit> hits = manager.getClusterIndex().withinRadius(pos, oreTypes, radius);
+        return toClusterInfo(level, manager, hits);
+    }
 
-        return sortedClusters;
+    /**
+     * Builds OreClusterInfo from index hits, status is read from loaded chunks only so no chunk is instantiated
+     */
+    private static List<OreClusterInfo> toClusterInfo(LevelAccessor level, OreClusterManager manager, List<ClusterSpatialIndex.Hit> hits)
+    {
+        List<OreClusterInfo> clusterInfo = new ArrayList<>(hits.size());
+        for(ClusterSpatialIndex.Hit hit : hits)
+        {
+            ManagedOreClusterChunk loaded = manager.loadedOreClusterChunks.get(hit.chunkId);
+            OreClusterStatus status = (loaded != null) ? loaded.getStatus()
+                : (manager.completeChunks.contains(hit.chunkId) ? OreClusterStatus.COMPLETE : null);
+            OreClusterInfo info = new OreClusterInfo(level, hit.chunkId, hit.oreType, hit.position, status);
+            info.pointDistance = hit.distanceSqr;
+            clusterInfo.add(info);
+        }
+        return clusterInfo;
     }
 
     public JsonObject getManagedChunkDetails(LevelAccessor level, String chunkId) {
         OreClusterManager manager = managers.get(level);
         if(manager == null) return null;
-        ManagedOreClusterChunk chunk = manager.getManagedOreClusterChunk(chunkId);
-        if(chunk == null) return null;
+        long key = ChunkKey.fromId(chunkId);
+        ManagedOreClusterChunk chunk = manager.loadedOreClusterChunks.get(key);
+        if(chunk == null) return getIndexedChunkDetails(manager, key);
 
         //Collect info on ManagedOreClusterChunk
         //id
@@ -277,13 +292,54 @@ public class OreClusterApi {
             chunkDetails.addProperty("clusters", "No clusters found");
         }
 
+        ClusterFootprint footprint = chunk.getFootprint();
+        if(footprint != null) {
+            chunkDetails.addProperty("clusterBlocksPlaced", footprint.placed());
+            chunkDetails.addProperty("clusterBlocksHarvested", footprint.harvested());
+        }
+
+        if(chunk.hasClusters()) {
+            int layoutBlocks = 0;
+            for(OreClusterId oreType : chunk.getClusterTypes().keySet()) {
+                ClusterLayout layout = chunk.getClusterLayout(oreType);
+                if(layout != null) layoutBlocks += layout.size();
+            }
+            chunkDetails.addProperty("clusterLayoutBlocks", layoutBlocks);
+        }
+
+        return chunkDetails;
+    }
+
+    /**
+     * Details of a chunk that is not loaded, answered from the manager's indexes without reading the chunk
+     */
+    private static JsonObject getIndexedChunkDetails(OreClusterManager manager, long chunkId)
+    {
+        JsonObject chunkDetails = new JsonObject();
+        chunkDetails.addProperty("id", ChunkKey.toId(chunkId));
+        OreClusterStatus status = manager.completeChunks.contains(chunkId) ? OreClusterStatus.COMPLETE
+            : (manager.determinedChunks.contains(chunkId) ? OreClusterStatus.DETERMINED : OreClusterStatus.NONE);
+        chunkDetails.addProperty("status", status.toString());
+
+        JsonArray clusterArray = new JsonArray();
+        for(OreClusterId id : manager.existingTypeIndex.types(chunkId)) {
+            String block = HBUtil.BlockUtil.blockToString(id.getBlock());
+            clusterArray.add(block + ": " + manager.clusterIndex.position(id, chunkId));
+        }
+        for(OreClusterId id : manager.tentativeTypeIndex.types(chunkId)) {
+            if(manager.existingTypeIndex.contains(chunkId, id)) continue;
+            clusterArray.add(HBUtil.BlockUtil.blockToString(id.getBlock()) + ": tentative");
+        }
+
+        if(clusterArray.size() == 0) chunkDetails.addProperty("clusters", "No clusters found");
+        else chunkDetails.add("clusters", clusterArray);
         return chunkDetails;
     }
 
     public boolean forceChunkReload(LevelAccessor level, String chunkId) {
         OreClusterManager manager = managers.get(level);
         if(manager == null) return false;
-        return manager.forceProcessChunk(chunkId);
+        return manager.forceProcessChunk(ChunkKey.fromId(chunkId));
     }
 
     public boolean addCluster(LevelAccessor level, String configId, BlockPos pos)
@@ -316,8 +372,7 @@ public class OreClusterApi {
         OreClusterManager manager = managers.get(level);
         if(manager == null) return false;
 
-        String chunkId = HBUtil.ChunkUtil.getId(pos);
-        return manager.addNewCluster(oreType, chunkId, pos);
+        return manager.addNewCluster(oreType, ChunkKey.of(pos), pos);
     }
 
 
@@ -340,6 +395,49 @@ public class OreClusterApi {
         regenManager.triggerRegen(level, chunkId);
     }
 
+    /**
+     * Regen epoch and progress of the latest global regeneration wave over loaded chunks in each level.
+     * Unloaded chunks are not part of the wave, they regenerate when next loaded
+     * @return level id -> regenEpoch, regenScheduled, status, total, processed, remaining, percent, chunksPerSecond, etaSeconds
+     */
+    public JsonObject getRegenStatus()
+    {
+        JsonObject status = new JsonObject();
+        for( Map.Entry<LevelAccessor, OreClusterManager> e : managers.entrySet() ) {
+            OreClusterRegenJob job = e.getValue().getRegenJob();
+            JsonObject levelStatus = (job == null) ? new JsonObject() : job.toJson();
+            levelStatus.addProperty("regenEpoch", e.getValue().getRegenEpoch());
+            levelStatus.addProperty("regenScheduled", regenManager.getScheduledRegenCount(e.getKey()));
+            status.add(HBUtil.LevelUtil.toLevelId(e.getKey()), levelStatus);
+        }
+        return status;
+    }
+
+    /**
+     * Cancels running global regeneration waves, chunks already released still regenerate
+     * @return number of levels whose wave was cancelled
+     */
+    public int cancelRegen()
+    {
+        int cancelled = 0;
+        for( OreClusterManager m : managers.values() ) {
+            if( m.cancelRegen() ) cancelled++;
+        }
+        return cancelled;
+    }
+
+    /**
+     * Changes the rate of running global regeneration waves, later waves use the configured rate
+     * @param chunksPerSecond
+     */
+    public void setRegenRate(int chunksPerSecond)
+    {
+        for( OreClusterManager m : managers.values() ) {
+            OreClusterRegenJob job = m.getRegenJob();
+            if( job != null ) job.setRate(chunksPerSecond);
+        }
+    }
+
     /**
      * Returns queue lengths and average time of completion for processes in the OreClusterManager
      * @param m
@@ -356,8 +454,33 @@ public class OreClusterApi {
         queueSizes.addProperty("pendingPreGeneration", m.chunksPendingPreGeneration.size());
         queueSizes.addProperty("pendingGeneration", m.chunksPendingGeneration.size());
         queueSizes.addProperty("pendingRegeneration", m.chunksPendingRegeneration.size());
+        queueSizes.addProperty("inFlightPreGeneration", m.pipeline.inFlight());
+        queueSizes.addProperty("pendingPipelineCommits", m.pipeline.pendingCompletions());
+        queueSizes.addProperty("parkedUntilLoaded", m.waitList.parkedSize());
+        queueSizes.addProperty("deferredNotReady", m.waitList.deferredSize());
         health.add("queueSizes", queueSizes);
 
+        // Duplicate enqueues collapsed by each queue
+        JsonObject duplicatesSuppressed = new JsonObject();
+        duplicatesSuppressed.addProperty("pendingHandling", m.chunksPendingHandling.duplicatesSuppressed());
+        duplicatesSuppressed.addProperty("pendingDeterminations", m.chunksPendingDeterminations.duplicatesSuppressed());
+        duplicatesSuppressed.addProperty("pendingCleaning", m.chunksPendingCleaning.duplicatesSuppressed());
+        duplicatesSuppressed.addProperty("pendingPreGeneration", m.chunksPendingPreGeneration.duplicatesSuppressed());
+        duplicatesSuppressed.addProperty("pendingGeneration", m.chunksPendingGeneration.duplicatesSuppressed());
+        health.add("duplicatesSuppressed", duplicatesSuppressed);
+        health.addProperty("editClaimsContended", m.claimsContended.get());
+
+        // Admission control, queue backlogs and watermark crossings
+        JsonObject admission = new JsonObject();
+        admission.add("pendingHandling", m.chunksPendingHandling.admissionToJson());
+        admission.add("pendingDeterminations", m.chunksPendingDeterminations.admissionToJson());
+        admission.add("pendingCleaning", m.chunksPendingCleaning.admissionToJson());
+        admission.add("pendingPreGeneration", m.chunksPendingPreGeneration.admissionToJson());
+        admission.add("pendingGeneration", m.chunksPendingGeneration.admissionToJson());
+        admission.addProperty("loadedChunksHighWatermarkCrossings", m.loadedChunksHighWatermarkCrossings);
+        admission.addProperty("loadedChunksDeferred", m.loadedChunksDeferred);
+        health.add("admission", admission);
+
         // Thread Times
         JsonObject threadTimes = new JsonObject();
         m.THREAD_TIMES.forEach((threadName, times) -> {
@@ -368,49 +491,79 @@ public class OreClusterApi {
         });
         health.add("averageThreadTimes", threadTimes);
 
+        // Tick Budget
+        health.add("tickBudget", m.tickBudget.toJson());
+
+        // Shared worker pool usage of this dimension
+        health.add("workerPool", m.pipeline.workerStatistics());
+
         // Chunk Tracking
         JsonObject chunkTracking = new JsonObject();
-        String[] determinedSourceChunks = m.determinedSourceChunks.toArray(new String[0]);
+        chunkTracking.addProperty("indexedClusters", m.clusterIndex.size());
+        String[] determinedSourceChunks = OreClusterManager.toChunkIds(m.determinedSourceChunks);
         chunkTracking.add("determinedSourceChunks", HBUtil.FileIO.arrayToJson(determinedSourceChunks));
         chunkTracking.addProperty("determinedChunks", m.determinedChunks.size());
         chunkTracking.addProperty("loadedOreClusterChunks", m.loadedOreClusterChunks.size());
         chunkTracking.addProperty("expiredChunks", m.expiredChunks.size());
+        chunkTracking.addProperty("expiryScheduled", m.expiryWheel.size());
+        chunkTracking.addProperty("evictionsPendingSave", m.evictions.pendingSaveSize());
+        chunkTracking.addProperty("evictionsConfirmed", m.evictions.confirmedSize());
+        chunkTracking.addProperty("chunksEvicted", m.chunksEvicted);
+        chunkTracking.addProperty("clusterBlocksHarvested", m.blocksHarvested);
+        chunkTracking.addProperty("regenSkippedUntouched", m.regenSkippedUntouched);
+        chunkTracking.addProperty("regenBlocksRewritten", m.regenBlocksRewritten);
         chunkTracking.addProperty("completeChunks", m.completeChunks.size());
+        chunkTracking.addProperty("chunkSetBytes", m.determinedChunks.estimatedBytes() + m.completeChunks.estimatedBytes());
         health.add("chunkTracking", chunkTracking);
 
+        // Incremental saves
+        JsonObject persistence = new JsonObject();
+        persistence.add("regionStore", m.saveStatistics.toJson());
+        persistence.addProperty("regionsUnloaded", m.unloadedRegions.size());
+        persistence.addProperty("regionsStreamed", m.regionsStreamed);
+        persistence.addProperty("regionsLoadedOnDemand", m.regionsLoadedOnDemand);
+        persistence.addProperty("regenEpoch", m.getRegenEpoch());
+        persistence.addProperty("regenScheduled", regenManager.getScheduledRegenCount(m.getLevel()));
+        persistence.add("regenManager", regenManager.getSaveStatistics().toJson());
+        health.add("persistence", persistence);
+
+        // Global regeneration wave
+        OreClusterRegenJob regenJob = m.getRegenJob();
+        if( regenJob != null ) health.add("regenJob", regenJob.toJson());
+
         return health;
     }
 
 
     /**
-     * Returns a set of chunkIds for all chunks that have not completed initial processing
+     * Returns a set of chunk keys for all chunks that have not completed initial processing
      * @param m
      * @return
      */
-    public Set<String> getIncompleteChunks(OreClusterManager m)
+    public LongSet getIncompleteChunks(OreClusterManager m)
     {
-        Set<String> loaded = m.loadedOreClusterChunks.values().stream()
-            .filter( c -> !c.isFinished(c) )
-            .map( c -> c.getId() )
-            .collect(HashSet::new, HashSet::add, HashSet::addAll);
-
-        Set<String> unloaded = m.determinedChunks.stream()
-            .filter( c -> !m.completeChunks.contains(c) )
-            .collect(HashSet::new, HashSet::add, HashSet::addAll);
+        LongSet incompleteChunks = new LongOpenHashSet();
+        synchronized (m.loadedOreClusterChunks) {
+            for(ManagedOreClusterChunk c : m.loadedOreClusterChunks.values()) {
+                if(!c.isFinished(c)) incompleteChunks.add(c.getKey());
+            }
+        }
 
-        loaded.addAll(unloaded);
-        Set<String> incompleteChunks = loaded.stream()
-            .filter( c -> !m.forceLoadedChunks.containsKey(c))
-            .collect(HashSet::new, HashSet::add, HashSet::addAll);
+        synchronized (m.determinedChunks) {
+            for(long c : m.determinedChunks) {
+                if(!m.completeChunks.contains(c)) incompleteChunks.add(c);
+            }
+        }
 
+        incompleteChunks.removeIf( (long c) -> m.forceLoadedChunks.containsKey(c) );
         return incompleteChunks;
     }
 
-    public boolean debugForceLoadChunk(OreClusterManager m, String chunkId, AtomicBoolean succeeded) {
+    public boolean debugForceLoadChunk(OreClusterManager m, long chunkId, AtomicBoolean succeeded) {
         if(  m.forceProcessChunk(chunkId) ) {
             succeeded.set(true);
         } else {
-            LoggerProject.logWarning("016004", "Chunk: " + chunkId + " failed to reload properly, maybe try restarting the server");
+            LoggerProject.logWarning("016004", "Chunk: " + ChunkKey.toId(chunkId) + " failed to reload properly, maybe try restarting the server");
         }
         return succeeded.get();
     }
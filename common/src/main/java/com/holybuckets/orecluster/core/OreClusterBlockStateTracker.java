@@ -3,6 +3,7 @@ package com.holybuckets.orecluster.core;
 import com.holybuckets.foundation.HBUtil;
 import com.holybuckets.orecluster.ModRealTimeConfig;
 import com.holybuckets.orecluster.config.model.OreClusterConfigModel;
+import com.holybuckets.orecluster.core.model.ChunkKey;
 import com.holybuckets.orecluster.core.model.ManagedOreClusterChunk;
 import net.minecraft.core.BlockPos;
 import net.minecraft.server.level.ServerLevel;
@@ -26,7 +27,7 @@ public class OreClusterBlockStateTracker
 {
     ChunkAccess currentChunk;
     Map<LevelChunkSection, Integer> chunkSections;
-    String chunkId;
+    long chunkId;
     ServerLevel currentLevel;
     ManagedOreClusterChunk currentManagedOreClusterChunk;
 
@@ -34,6 +35,7 @@ public class OreClusterBlockStateTracker
     static Map<Integer, ServerLevel> LEVELCHUNKSECTION_LEVEL_REF_MAP;
     static Map<ServerLevel, OreClusterBlockStateTracker> LEVEL_TRACKERS;
     static Map<OreClusterId, OreClusterConfigModel> trackingOreConfig;
+    private static volatile Thread suppressedThread;
 
     public static void init(ModRealTimeConfig modRealTimeConfig) {
         LEVEL_TRACKERS = new ConcurrentHashMap<>();
@@ -48,7 +50,17 @@ public class OreClusterBlockStateTracker
         LEVEL_TRACKERS.get(level).setLevelTrackingChunk(chunk, pos);
     }
 
+    /**
+     * Ignore section writes made by the calling thread, used by ChunkSectionWriter so cluster
+     * manifestation is not mistaken for worldgen ore placement
+     * @param suppress
+     */
+    public static void suppressTracking(boolean suppress) {
+        suppressedThread = suppress ? Thread.currentThread() : null;
+    }
+
     public static void trackBlockState(LevelChunkSection section, BlockState state, int x, int y, int z) {
+        if(suppressedThread == Thread.currentThread()) return;
         if(LEVELCHUNKSECTION_LEVEL_REF_MAP.containsKey(section.hashCode()) == false) return;
         ServerLevel level = LEVELCHUNKSECTION_LEVEL_REF_MAP.get(section.hashCode());
         LEVEL_TRACKERS.get(level).trackLevelBlockState(section, state, x, y, z);
@@ -92,7 +104,7 @@ public class OreClusterBlockStateTracker
 
         OreClusterManager manager = OreClusterManager.getManager(currentLevel);
         if( manager == null ) return;
-        chunkId = HBUtil.ChunkUtil.getId(currentChunk);
+        chunkId = ChunkKey.of(currentChunk);
         currentManagedOreClusterChunk = manager.getManagedOreClusterChunk( chunkId );
         if( currentManagedOreClusterChunk != null ) {
             currentManagedOreClusterChunk.loadBiomes(chunk);
@@ -6,9 +6,12 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import com.holybuckets.foundation.HBUtil;
+import com.holybuckets.foundation.model.ManagedChunkUtility;
 import com.holybuckets.orecluster.ModRealTimeConfig;
 import com.holybuckets.orecluster.config.OreClusterConfigData;
+import com.holybuckets.orecluster.core.model.ChunkKey;
 import com.holybuckets.orecluster.core.model.ManagedOreClusterChunk;
+import it.unimi.dsi.fastutil.longs.*;
 import com.mojang.serialization.MapCodec;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Holder;
@@ -41,8 +44,8 @@ public class OreClusterCalculator {
     private OreClusterManager manager;
     private Level level;
     private ModRealTimeConfig C;
-    private Set<String> determinedChunks;
-    private ConcurrentHashMap<OreClusterId, Set<String>> localAreaClustersByType;
+    private LongSet determinedChunks;
+    private ConcurrentHashMap<OreClusterId, LongSet> localAreaClustersByType;
 
 
 
@@ -65,7 +68,7 @@ public class OreClusterCalculator {
      * determineChunks
      */
     @Deprecated
-    public Map<String, List<OreClusterId>> calculateClusterLocations(List<String> chunks, Random rng)
+    public Long2ObjectMap<List<OreClusterId>> calculateClusterLocations(LongList chunks, Random rng)
     {
         //long startTime = System.nanoTime();
 
@@ -78,10 +81,10 @@ public class OreClusterCalculator {
                 clusterConfigs.put(oreType, config);
         }
 
-        HashMap<String, List<OreClusterId>> clusterPositions = new HashMap<>();
+        Long2ObjectOpenHashMap<List<OreClusterId>> clusterPositions = new Long2ObjectOpenHashMap<>();
         List<OreClusterId> oreClusterTypes = new ArrayList<>(clusterConfigs.keySet());
         if(oreClusterTypes.isEmpty()) {
-            for( String chunkId : chunks ) {
+            for( long chunkId : chunks ) {
                 clusterPositions.put(chunkId, null);
             }
             return clusterPositions;
@@ -116,7 +119,7 @@ public class OreClusterCalculator {
          */
 
          //1. Get recently loaded chunks
-         String startChunk =  chunks.get(0);
+         long startChunk =  chunks.getLong(0);
          int minSpacing = C.getDefaultConfigModel().minChunksBetweenOreClusters;
 
         /* If the spacing between clusters is large, there will be fewer cluster chunks, so we can check all against
@@ -124,10 +127,11 @@ public class OreClusterCalculator {
         *   If the spacing is small, we will have many cluster chunks, better to check the radius
          */
          final int MIN_SPACING_VALIDATOR_CUTOFF_RADIUS = Math.min( determinedChunks.size(), (int) Math.pow(minSpacing, 2) );
-         LinkedHashSet<String> chunksInRadiusOfStart = getChunkIdsInRadius(startChunk,
+         LongLinkedOpenHashSet chunksInRadiusOfStart = getChunkIdsInRadius(startChunk,
           Math.min( minSpacing, MIN_SPACING_VALIDATOR_CUTOFF_RADIUS ));
-         String closestToCenter = chunksInRadiusOfStart.stream().min(Comparator.comparingInt( c ->
-             Math.round( ChunkUtil.chunkDist( c, "0,0" ) )
+         final long ORIGIN = ChunkKey.of(0, 0);
+         long closestToCenter = chunksInRadiusOfStart.longStream().boxed().min(Comparator.comparingInt( c ->
+             Math.round( ChunkKey.dist( c, ORIGIN ) )
          )).get();
 
 
@@ -136,26 +140,28 @@ public class OreClusterCalculator {
          int spiralRadius = batchDimensions + MIN_SPACING_VALIDATOR_CUTOFF_RADIUS;
 
         //3. Stream existingClustersByType into a linkedHashSet, filtering for any chunks that have clusters
-        LinkedHashSet<String> localExistingClusters = new LinkedHashSet<>();
-        localAreaClustersByType.values().stream()
-            .forEach( ids -> localExistingClusters.addAll(ids));
+        LongLinkedOpenHashSet localExistingClusters = new LongLinkedOpenHashSet();
+        for( LongSet ids : localAreaClustersByType.values() ) {
+            synchronized (ids) { localExistingClusters.addAll(ids); }
+        }
          
 
 
          int minX, minZ, maxX, maxZ;
          minX = minZ = maxX = maxZ = 0;
 
-         for(String id : localExistingClusters )
+         for(long id : localExistingClusters )
          {
-                ChunkPos pos = ChunkUtil.getChunkPos(id);
-                if( pos.x < minX )
-                    minX = pos.x;
-                if( pos.x > maxX )
-                    maxX = pos.x;
-                if( pos.z < minZ )
-                    minZ = pos.z;
-                if( pos.z > maxZ )
-                    maxZ = pos.z;
+                int x = ChunkKey.x(id);
+                int z = ChunkKey.z(id);
+                if( x < minX )
+                    minX = x;
+                if( x > maxX )
+                    maxX = x;
+                if( z < minZ )
+                    minZ = z;
+                if( z > maxZ )
+                    maxZ = z;
           }
 
 
@@ -167,7 +173,7 @@ public class OreClusterCalculator {
         float chunksPerCluster = chunks.size() / totalClusters;
         float stdDev = Math.max( (chunksPerCluster - minSpacing) / 3, 0);
 
-        List<String> chunksToBePopulated = new LinkedList<>();  //may contain duplicates
+        LongList chunksToBePopulated = new LongArrayList();  //may contain duplicates
 
 
         int chunkIndex = 0;
@@ -190,7 +196,7 @@ public class OreClusterCalculator {
                  * these clusters, once assigned a particular ore type, will be discarded later
                  */
 
-                String chunkId = chunks.get(chunkIndex++);
+                long chunkId = chunks.getLong(chunkIndex++);
                 if( determinedChunks.contains(chunkId) )
                     continue;
 
@@ -205,8 +211,8 @@ public class OreClusterCalculator {
                 {
 
                     //Now we found a chunk where we randomly want to place a cluster, check 2D array to check validity
-                    LinkedHashSet<String> nearbyChunks = getChunkIdsInRadius(chunkId, minSpacing);
-                    for( String nearbyChunk : nearbyChunks ) {
+                    LongLinkedOpenHashSet nearbyChunks = getChunkIdsInRadius(chunkId, minSpacing);
+                    for( long nearbyChunk : nearbyChunks ) {
                         if( localExistingClusters.contains(nearbyChunk) ) {
                             openSpaceForCluster = false;
                             break;
@@ -215,8 +221,8 @@ public class OreClusterCalculator {
                 }
                 else
                 {
-                    if( localExistingClusters.stream().anyMatch( c ->
-                            ChunkUtil.chunkDist( c, chunkId ) < minSpacing ))
+                    if( localExistingClusters.longStream().anyMatch( c ->
+                            ChunkKey.dist( c, chunkId ) < minSpacing ))
                     {
                         openSpaceForCluster = false;
                     }
@@ -227,7 +233,7 @@ public class OreClusterCalculator {
             //FOUND A VALID CHUNK, PLACE A CLUSTER
             if( chunkIndex < chunks.size() )
             {
-                String chunkId = chunks.get(chunkIndex);
+                long chunkId = chunks.getLong(chunkIndex);
                 chunksToBePopulated.add(chunkId);
                 localExistingClusters.add(chunkId);
             }
@@ -237,7 +243,7 @@ public class OreClusterCalculator {
 
         //4. Using the Map of aggregate clusters, pick chunks for each cluster type
         oreClusterTypes.sort(Comparator.comparingInt( o -> -1*clusterConfigs.get(o).oreClusterSpawnRate ));
-        LinkedHashSet<String> selectedChunks = new LinkedHashSet<>();
+        LongLinkedOpenHashSet selectedChunks = new LongLinkedOpenHashSet();
 
         /**
          * Iterate over all ore types we want to place clusters for
@@ -262,7 +268,11 @@ public class OreClusterCalculator {
              for (OreClusterId oreType : oreClusterTypes)
              {
                  OreClusterConfigModel config = clusterConfigs.get(oreType);
-                 HashSet<String> allChunksWithClusterType = localAreaClustersByType.get(oreType).stream().collect(Collectors.toCollection(HashSet::new));
+                 LongSet existingWithClusterType = localAreaClustersByType.get(oreType);
+                 LongOpenHashSet allChunksWithClusterType;
+                 synchronized (existingWithClusterType) {
+                     allChunksWithClusterType = new LongOpenHashSet(existingWithClusterType);
+                 }
                  //allChunksWithClusterType.removeIf( c -> !localExistingClusters.contains(c) );
                  final int MIN_SPACING_SPECIFIC_CLUSTER_VALIDATOR_CUTOFF_RADIUS = Math.min(allChunksWithClusterType.size(),
                      (int) Math.pow(config.minChunksBetweenOreClusters, 2));
@@ -280,26 +290,27 @@ public class OreClusterCalculator {
                  int specificMinSpacing = config.minChunksBetweenOreClusters;
 
                  //removes all chunks that were selected by previous ores, removes item from hashset so duplicates are left
-                 Iterator<String> it = chunksToBePopulated.iterator();
+                 LongListIterator it = chunksToBePopulated.iterator();
                  while (it.hasNext()) {
-                     String chunkId = it.next();
+                     long chunkId = it.nextLong();
                      if (selectedChunks.remove(chunkId)) {
                          it.remove();
                      }
                  }
-                 LinkedList<String> chunksToBePopulatedSpecificCopy = new LinkedList<>(chunksToBePopulated);
-                 Collections.shuffle(chunksToBePopulatedSpecificCopy, rng);
+                 LongArrayList chunksToBePopulatedSpecificCopy = new LongArrayList(chunksToBePopulated);
+                 LongLists.shuffle(chunksToBePopulatedSpecificCopy, rng);
+                 int copyIndex = 0;
                  boolean validCluster = false;
 
                  while (clustersPlaced < totalSpecificClusters)
                  {
                      clustersPlaced++;
-                     String candidateChunkId = null;
+                     long candidateChunkId = ChunkKey.NONE;
                      validCluster = false;
 
-                     while (!validCluster && !chunksToBePopulatedSpecificCopy.isEmpty())
+                     while (!validCluster && copyIndex < chunksToBePopulatedSpecificCopy.size())
                      {
-                         candidateChunkId = chunksToBePopulatedSpecificCopy.removeFirst();
+                         candidateChunkId = chunksToBePopulatedSpecificCopy.getLong(copyIndex++);
 
                         //No clusters added to chunks that already exist, discarded
                          if (determinedChunks.contains(candidateChunkId))
@@ -308,17 +319,17 @@ public class OreClusterCalculator {
                          //Check if the chunk is within the radius of a chunk with the same cluster type
                          validCluster = true;
                          if (specificMinSpacing < MIN_SPACING_SPECIFIC_CLUSTER_VALIDATOR_CUTOFF_RADIUS) {
-                             LinkedHashSet<String> nearbyChunks = getChunkIdsInRadius(candidateChunkId, specificMinSpacing);
-                             for (String nearbyChunk : nearbyChunks) {
+                             LongLinkedOpenHashSet nearbyChunks = getChunkIdsInRadius(candidateChunkId, specificMinSpacing);
+                             for (long nearbyChunk : nearbyChunks) {
                                  if (allChunksWithClusterType.contains(nearbyChunk)) {
                                      validCluster = false;
                                      break;
                                  }
                              }
                          } else {
-                             final String id = candidateChunkId;
-                             if (allChunksWithClusterType.stream().anyMatch(c ->
-                                 ChunkUtil.chunkDist(c, id) < specificMinSpacing)) {
+                             final long id = candidateChunkId;
+                             if (allChunksWithClusterType.longStream().anyMatch(c ->
+                                 ChunkKey.dist(c, id) < specificMinSpacing)) {
                                  validCluster = false;
                              }
                          }
@@ -327,7 +338,7 @@ public class OreClusterCalculator {
                      //END WHILE FIND VALID CHUNK FOR GIVEN CLUSTER
 
                      //PLACE THE CLUSTER
-                     if (validCluster && candidateChunkId != null)
+                     if (validCluster && candidateChunkId != ChunkKey.NONE)
                      {
                          selectedChunks.add(candidateChunkId);
                          allChunksWithClusterType.add(candidateChunkId);
@@ -362,9 +373,9 @@ public class OreClusterCalculator {
         //LoggerBase.logDebug("Step 4 (Pick chunks for each cluster type) took " + LoggerBase.getTime(step3Time, step4Time) + " ms");
 
         //6. Remove all clusters at chunks that were populated in previous batches
-        Iterator<String> clusterPos =  clusterPositions.keySet().iterator();
+        LongIterator clusterPos =  clusterPositions.keySet().iterator();
         while( clusterPos.hasNext() ) {
-            String chunkId = clusterPos.next();
+            long chunkId = clusterPos.nextLong();
             if( determinedChunks.contains(chunkId) )
                 clusterPos.remove();
         }
@@ -385,15 +396,16 @@ public class OreClusterCalculator {
          * @param radius
          * @return
          */
-        private LinkedHashSet<String> getChunkIdsInRadius( String chunkId, int radius )
+        private LongLinkedOpenHashSet getChunkIdsInRadius( long chunkId, int radius )
         {
-            LinkedHashSet<String> chunks = new LinkedHashSet<>();
-            ChunkPos center = ChunkUtil.getChunkPos(chunkId);
-            for( int x = center.x - radius; x <= center.x + radius; x++ )
+            LongLinkedOpenHashSet chunks = new LongLinkedOpenHashSet();
+            int cx = ChunkKey.x(chunkId);
+            int cz = ChunkKey.z(chunkId);
+            for( int x = cx - radius; x <= cx + radius; x++ )
             {
-                for( int z = center.z - radius; z <= center.z + radius; z++ )
+                for( int z = cz - radius; z <= cz + radius; z++ )
                 {
-                    chunks.add(ChunkUtil.getId(x, z));
+                    chunks.add(ChunkKey.of(x, z));
                 }
             }
             return chunks;
@@ -532,12 +544,14 @@ public class OreClusterCalculator {
      * Takes an oreConfig and a source position and generates a sequence of positions
      * that will become the ore cluster in the world.
      *
-     * This process is expensive and delaying load times
+     * This process is expensive and delaying load times. Only reads the snapshot, so it may run on a
+     * pipeline worker
+     * @param blocks copy of the chunk sections around the cluster, taken on the server thread
      * @param clusterId source type of the cluster
      * @param sourcePos source position of the cluster
      * @return List of Blockstate - BlockPos pairs that make up the ore cluster
      */
-    public List<Pair<BlockState, BlockPos>> generateCluster(ManagedOreClusterChunk chunk, OreClusterId clusterId, BlockPos sourcePos)
+    public List<Pair<BlockState, BlockPos>> generateCluster(ChunkSectionSnapshot blocks, OreClusterId clusterId, BlockPos sourcePos)
     {
 
         //1. Determine the cluster size and shape
@@ -589,7 +603,7 @@ public class OreClusterCalculator {
 
         OreClusterGeneratorUtility generator;
         try {
-             generator = new OreClusterGeneratorUtility(chunk, clusterId, blockPositions, relativePosData);
+             generator = new OreClusterGeneratorUtility(blocks, clusterId, sourcePos, blockPositions, relativePosData);
         } catch ( NullPointerException e) {
             return null;
         }
@@ -622,8 +636,8 @@ public class OreClusterCalculator {
     class OreClusterGeneratorUtility
     {
 
-        private ManagedOreClusterChunk chunk;
-        private LevelChunk levelChunk;
+        private ChunkSectionSnapshot blocks;
+        private BlockPos sourcePos;
         private Random randomGenerator;
         private List<BlockPos> blockWorldPositions;
         private List<Pair<Integer, List<Integer>>> relativePositions;
@@ -649,12 +663,12 @@ public class OreClusterCalculator {
         private DensityFunction.ContextProvider densityFunctionContext;
 
 
-        OreClusterGeneratorUtility(ManagedOreClusterChunk chunk, OreClusterId id, List<BlockPos> blockPositions, List<Pair<Integer, List<Integer>>> positions)
+        OreClusterGeneratorUtility(ChunkSectionSnapshot blocks, OreClusterId id, BlockPos sourcePos, List<BlockPos> blockPositions, List<Pair<Integer, List<Integer>>> positions)
         {
-            this.chunk = chunk;
-            this.levelChunk = this.chunk.getChunk(false);
-            this.randomGenerator = this.chunk.getChunkRandom();
-            if( levelChunk == null ) throw new NullPointerException("LevelChunk for ManagedOreClusterChunk " + chunk.getId() + " is null" );
+            if( blocks == null ) throw new NullPointerException("No block snapshot for cluster at " + sourcePos );
+            this.blocks = blocks;
+            this.sourcePos = sourcePos;
+            this.randomGenerator = ManagedChunkUtility.getChunkRandom(blocks.getPos(), ModRealTimeConfig.CLUSTER_SEED);
             this.blockWorldPositions = blockPositions;
             this.relativePositions = positions;
 
@@ -752,7 +766,7 @@ public class OreClusterCalculator {
 
             int count = 0;
             for (BlockPos pos : positions) {
-                if (levelChunk.getBlockState(pos).isAir()) {
+                if (blocks.getBlockState(pos).isAir()) {
                     count++;
                 }
             }
@@ -769,11 +783,11 @@ public class OreClusterCalculator {
 
             //Do our best to match the blockState of block at the cluster source position, but sometimes this will
             //just be a random block and we don't want to convert our cluster to a stone or grass cluster
-            BlockPos clusterOrigin = chunk.getOreClusterSourcePos(oreClusterId);
-            Block blockAtClusterOrigin = levelChunk.getBlockState(clusterOrigin).getBlock();
+            BlockPos clusterOrigin = this.sourcePos;
+            Block blockAtClusterOrigin = blocks.getBlockState(clusterOrigin).getBlock();
             BlockState baseBlockState = config.oreClusterType;
             if(config.oreClusterType.getBlock().equals(blockAtClusterOrigin))
-                baseBlockState = levelChunk.getBlockState(clusterOrigin);
+                baseBlockState = blocks.getBlockState(clusterOrigin);
 
             for( int i = 0; i < 100; i++ ) {
                 temp.add(baseBlockState);
@@ -10,7 +10,10 @@ import com.holybuckets.foundation.event.custom.ServerTickEvent;
 import com.holybuckets.foundation.event.custom.TickType;
 import com.holybuckets.orecluster.LoggerProject;
 import com.holybuckets.orecluster.OreClustersAndRegenMain;
+import com.holybuckets.orecluster.core.model.ChunkKey;
 import com.holybuckets.orecluster.core.model.ManagedOreClusterChunk;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import net.blay09.mods.balm.api.event.server.ServerStartedEvent;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
@@ -29,7 +32,7 @@ public class OreClusterHealthCheck {
     private final Gson gson;
     private OreClusterApi oreClusterApi;
     private final Map<LevelAccessor, OreClusterManager> managers;
-    private final Deque<Pair<OreClusterManager, String>> chunkReloadTasks;
+    private final Deque<Pair<OreClusterManager, Long>> chunkReloadTasks;
 
     //Threads
     private Thread statisticHealthCheckThread;
@@ -83,25 +86,28 @@ public class OreClusterHealthCheck {
     }
 
     private static final long CHUNK_LOADS_WAIT_PROCESSING_TIME = (OreClustersAndRegenMain.DEBUG) ? 30000 : 60000;
-    HBUtil.ChunkUtil c_util = new HBUtil.ChunkUtil();
     private void chunkLoadsHealthCheck()
     {
         for(OreClusterManager m : managers.values())
         {
             GeneralConfig config = GeneralConfig.getInstance();
             List<ServerPlayer> players = config.getServer().getPlayerList().getPlayers();
-            List<String> playerChunks = players.stream()
-                    .filter(p -> p.serverLevel() == m.getLevel())
-                    .map(p -> c_util.getId(p.chunkPosition())).toList();
-
-            List<String> localAreaChunks = new ArrayList<>(playerChunks.size()*10);
-
-            playerChunks.stream().map(c -> c_util.getChunkPos(c)).forEach( cp -> {
-                localAreaChunks.addAll(c_util.getLocalChunkIds(cp,1));
-            });
+            List<ServerPlayer> localPlayers = players.stream()
+                    .filter(p -> p.serverLevel() == m.getLevel()).toList();
+
+            LongSet localAreaChunks = new LongOpenHashSet(localPlayers.size()*9);
+            for(ServerPlayer p : localPlayers) {
+                long center = ChunkKey.of(p.chunkPosition());
+                for(int dx = -1; dx <= 1; dx++)
+                    for(int dz = -1; dz <= 1; dz++)
+                        localAreaChunks.add(ChunkKey.of(ChunkKey.x(center) + dx, ChunkKey.z(center) + dz));
+            }
 
-            Set<String> incompleteChunks = oreClusterApi.getIncompleteChunks(m);
-            List<String> localIncompleteChunks = incompleteChunks.stream().filter(c -> localAreaChunks.contains(c)).toList();
+            LongSet incompleteChunks = oreClusterApi.getIncompleteChunks(m);
+            LongSet localIncompleteChunks = new LongOpenHashSet();
+            for(long c : incompleteChunks) {
+                if(localAreaChunks.contains(c)) localIncompleteChunks.add(c);
+            }
 
             if( localIncompleteChunks.isEmpty() ) continue;
 
@@ -112,8 +118,9 @@ public class OreClusterHealthCheck {
             }
 
             incompleteChunks = oreClusterApi.getIncompleteChunks(m);
-            incompleteChunks.stream().filter(c -> localIncompleteChunks.contains(c))
-                .forEach(c -> chunkReloadTasks.addLast(Pair.of(m, c)));
+            for(long c : incompleteChunks) {
+                if(localIncompleteChunks.contains(c)) chunkReloadTasks.addLast(Pair.of(m, c));
+            }
 
             chunkReloadExecutor.submit(this::chunkLoadedHealthCheckExecutorThread);
         }
@@ -128,12 +135,12 @@ public class OreClusterHealthCheck {
         {
             while( !chunkReloadTasks.isEmpty() )
             {
-                Pair<OreClusterManager, String> task = chunkReloadTasks.poll();
+                Pair<OreClusterManager, Long> task = chunkReloadTasks.poll();
                 OreClusterManager m = task.getLeft();
-                String chunkId = task.getRight();
+                long chunkId = task.getRight();
                 AtomicBoolean succeeded = new AtomicBoolean(false);
 
-                LoggerProject.logWarning("016003", "Chunk: " + chunkId + " failed to load properly, will be reloaded");
+                LoggerProject.logWarning("016003", "Chunk: " + ChunkKey.toId(chunkId) + " failed to load properly, will be reloaded");
 
                 Thread forceLoad = new Thread(() -> oreClusterApi.debugForceLoadChunk(m, chunkId, succeeded));
                 forceLoad.start();
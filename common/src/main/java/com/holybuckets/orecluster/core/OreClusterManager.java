@@ -2,14 +2,14 @@ package com.holybuckets.orecluster.core;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
 import com.holybuckets.foundation.GeneralConfig;
 import com.holybuckets.foundation.HBUtil;
 import com.holybuckets.foundation.HBUtil.*;
 import com.holybuckets.foundation.datastore.DataStore;
 import com.holybuckets.foundation.datastore.LevelSaveData;
-import com.holybuckets.foundation.datastructure.ConcurrentLinkedSet;
-import com.holybuckets.foundation.datastructure.ConcurrentSet;
 import com.holybuckets.foundation.event.EventRegistrar;
 import com.holybuckets.foundation.event.custom.DatastoreSaveEvent;
 import com.holybuckets.foundation.event.custom.ServerTickEvent;
@@ -21,7 +21,11 @@ import com.holybuckets.orecluster.LoggerProject;
 import com.holybuckets.orecluster.ModRealTimeConfig;
 import com.holybuckets.orecluster.OreClustersAndRegenMain;
 import com.holybuckets.orecluster.config.model.OreClusterConfigModel;
+import com.holybuckets.orecluster.core.model.ChunkKey;
+import com.holybuckets.orecluster.core.model.ChunkKeySet;
+import com.holybuckets.orecluster.core.model.ClusterLayout;
 import com.holybuckets.orecluster.core.model.ManagedOreClusterChunk;
+import it.unimi.dsi.fastutil.longs.*;
 import net.blay09.mods.balm.api.event.*;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Vec3i;
@@ -39,18 +43,20 @@ import oshi.annotation.concurrent.ThreadSafe;
 
 //Java Imports
 
+import javax.annotation.Nullable;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.holybuckets.orecluster.OreClustersAndRegenMain.DEBUG;
 import static com.holybuckets.orecluster.core.model.ManagedOreClusterChunk.*;
-import static java.lang.Thread.sleep;
 import static com.holybuckets.orecluster.config.model.OreClusterConfigModel.OreClusterId;
+import static com.holybuckets.orecluster.core.OreClusterPipeline.Stage;
 
 /**
  * Class: OreClusterManager
@@ -64,12 +70,13 @@ import static com.holybuckets.orecluster.config.model.OreClusterConfigModel.OreC
  *  config - (private) RealTimeConfig object contains statically defined and configurable variables
  *  randSeqClusterPositionGen - (private) Random object for generating cluster positions
  *
- *  newlyLoadedChunks - (private) LinkedBlockingQueue of chunkIds that have been loaded and not yet processed
- *  chunksPendingDeterminations - (private) LinkedBlockingQueue of chunkIds that are pending cluster determination
- *  chunksPendingGeneration - (private) LinkedBlockingQueue of chunkIds that are pending cluster generation
+ *  newlyLoadedChunks - ChunkKeyQueue of chunk keys that have been loaded and not yet processed
+ *  chunksPendingDeterminations - ChunkKeyQueue of chunk keys that are pending cluster determination
+ *  chunksPendingGeneration - ChunkKeyQueue of chunk keys that are pending cluster generation
+ *      all stage queues are ordered by distance to the nearest player, see PlayerChunkPriority
  *
  *  existingClusters - (private) ConcurrentHashMap of (chunkId, (oreType, Vec3i)) containing all existing clusters
- *      in the world, each String chunkId maps to a HashMap of each chunk's cluster type(s) and origin
+ *      in the world, each packed ChunkKey maps to a HashMap of each chunk's cluster type(s) and origin
  *  existingClustersByType - (private) ConcurrentHashMap of (oreType, (chunkId)) containing all existing clusters
  *      allows to check quickly if any newly generated chunk has a nearby cluster of its type
  *  chunksPendingClusterGen - (private) ConcurrentLinkedQueue of chunkIds that are pending cluster generation in the main gamethread
@@ -80,9 +87,9 @@ import static com.holybuckets.orecluster.config.model.OreClusterConfigModel.OreC
  *  oreClusterCalculator - (private) Handles calculations for cluster determination and generation
  *  managerRunning - (private) boolean flag for toggling internal threads on and off
  *
- *  threadPoolLoadedChunks - (private) ExecutorService for handling newly loaded chunks, 1 thread
- *  threadPoolClusterDetermination - (private) ExecutorService for handling cluster determinations, 1 thread
- *  threadPoolClusterGeneration - (private) ExecutorService for handling cluster generation, 3 threads
+ *  pipeline - OreClusterPipeline, runs compute only stages (pregeneration) on a shared worker pool
+ *      and commits their results back on the server thread
+ *  tickBudget - OreClusterTickBudget, time slice of each server tick available to this manager's stages
  *
  *  #Methods - list all methods and a brief description
  *
@@ -129,30 +136,43 @@ public class OreClusterManager {
     //private Random randSeqClusterShapeGen;
 
 
-    final LinkedBlockingQueue<String> chunksPendingHandling;
-    final LinkedBlockingQueue<String> chunksPendingDeterminations;
-    final LinkedBlockingQueue<String> chunksPendingCleaning;
-    final LinkedBlockingQueue<String> chunksPendingPreGeneration;
-    final LinkedBlockingQueue<String> chunksPendingGeneration;
-    final ConcurrentSet<String> chunksPendingRegeneration;
+    //All chunk ids are packed ChunkKey longs, String ids only appear in commands, JSON and NBT
+    //Stage queues are ordered by distance to the nearest player in this level
+    final PlayerChunkPriority playerPriority;
+    final ChunkKeyQueue chunksPendingHandling;
+    final ChunkKeyQueue chunksPendingDeterminations;
+    final ChunkKeyQueue chunksPendingCleaning;
+    final ChunkKeyQueue chunksPendingPreGeneration;
+    final ChunkKeyQueue chunksPendingGeneration;
+    final ChunkKeySet chunksPendingRegeneration;
+    //Incremented by each global regen, chunks whose regenEpoch is older regenerate when next loaded
+    private volatile int regenEpoch = 0;
+    private volatile boolean regenEpochDirty = false;
+    //Rolling global regeneration wave over loaded chunks, null until the first triggerRegen()
+    private volatile OreClusterRegenJob regenJob;
     //private final ConcurrentHashMap<String, ManagedOreClusterChunk> chunksPendingManifestation;
 
     //(chunkId, (oreType, Vec3i))
 
 
-    final ConcurrentLinkedSet<String> determinedSourceChunks;
-    final ConcurrentSet<String> determinedChunks;
-    final ConcurrentSet<String> completeChunks;
-    final ConcurrentHashMap<String, Integer> expiredChunks;
-
-    final ConcurrentHashMap<String, LevelChunk> forceLoadedChunks;
-    final ConcurrentHashMap<String, ManagedOreClusterChunk> loadedOreClusterChunks;
-    final Set<String> initializedOreClusterChunks;
-
-    final ConcurrentHashMap<OreClusterId, Set<String>> existingClustersByType;
-    final ConcurrentHashMap<OreClusterId, Set<String>> tentativeClustersByType;
-    final ConcurrentHashMap<OreClusterId, Set<String>> removedClustersByType;
-    final ConcurrentHashMap<String, Map<OreClusterId, BlockPos>> addedClustersByType;
+    final ChunkKeySet determinedSourceChunks;
+    final ChunkKeySet determinedChunks;
+    final ChunkKeySet completeChunks;
+    final Long2IntMap expiredChunks;
+
+    final Long2ObjectMap<LevelChunk> forceLoadedChunks;
+    final Long2ObjectMap<ManagedOreClusterChunk> loadedOreClusterChunks;
+    final LongSet initializedOreClusterChunks;
+
+    final ConcurrentHashMap<OreClusterId, LongSet> existingClustersByType;
+    final ConcurrentHashMap<OreClusterId, LongSet> tentativeClustersByType;
+    final ConcurrentHashMap<OreClusterId, ChunkKeySet> removedClustersByType;
+    final Long2ObjectMap<Map<OreClusterId, BlockPos>> addedClustersByType;
+    final ConcurrentHashMap<OreClusterId, ChunkKeySet> addedClusterChunksByType;
+    final ClusterSpatialIndex clusterIndex = new ClusterSpatialIndex();
+    /** chunk -> OreClusterIds reverse indexes of existingClustersByType and tentativeClustersByType **/
+    final OreClusterTypeIndex existingTypeIndex = new OreClusterTypeIndex();
+    final OreClusterTypeIndex tentativeTypeIndex = new OreClusterTypeIndex();
     final ChunkGenerationOrderHandler mainSpiral;
     private OreClusterCalculator oreClusterCalculator;
 
@@ -160,35 +180,39 @@ public class OreClusterManager {
     private volatile boolean managerRunning = false;
     private volatile boolean initializing = false;
     private final ConcurrentHashMap<String, Long> threadstarts = new ConcurrentHashMap<>();
+    final OreClusterTickBudget tickBudget = new OreClusterTickBudget();
+    final OreClusterPipeline pipeline;
+    final ChunkWaitList waitList = new ChunkWaitList();
+    final TickTimingWheel expiryWheel = new TickTimingWheel(GENERAL_CONFIG.getTotalTickCount());
+    final ChunkEvictionQueue evictions = new ChunkEvictionQueue();
+    long chunksEvicted = 0;
+    long blocksHarvested = 0;
+    long regenSkippedUntouched = 0;
+    long regenBlocksRewritten = 0;
+    private int weight = 1;
+    private boolean loadedChunksThrottled = false;
+    long loadedChunksHighWatermarkCrossings = 0;
+    long loadedChunksDeferred = 0;
+    private static final int MAX_PLAYER_WEIGHT = 7;
+    final AtomicLong claimsContended = new AtomicLong();
     private Thread threadLoad;
+    private OreClusterRegionStore regionStore;
+    private volatile boolean legacyLevelDataLoaded = false;
+    final OreClusterSaveStatistics saveStatistics = new OreClusterSaveStatistics();
+    /** Regions in the region store whose state has not been read yet **/
+    final LongSet unloadedRegions = LongSets.synchronize(new LongOpenHashSet());
+    /** One lock per region being read, a chunk only waits on the file IO of its own region **/
+    private final Map<Long, Object> regionLoadLocks = new ConcurrentHashMap<>();
+    /** Serializes merging read regions into the shared sets, never held during file IO **/
+    private final Object regionMergeLock = new Object();
+    private static final int REGION_LOAD_BATCH = 64;
+    long regionsStreamed = 0;
+    long regionsLoadedOnDemand = 0;
+    private static final String REGEN_EPOCH_KEY = "regenEpoch";
+    private static final String[] LEGACY_LEVEL_DATA_KEYS = {
+        "determinedSourceChunks", "removedClusters", "addedClusters", "chunksPendingRegen" };
     private Thread threadWatchManagedOreChunkLifetime;
 
-    // Execution counters
-    private final AtomicInteger loadedChunksCount = new AtomicInteger();
-    private final AtomicInteger clusterDeterminationCount = new AtomicInteger();
-    private final AtomicInteger clusterCleaningCount = new AtomicInteger();
-    private final AtomicInteger clusterGeneratingCount = new AtomicInteger();
-    private final AtomicInteger chunkEditingCount = new AtomicInteger();
-
-    private ThreadFactory createThreadFactory(String namePrefix, AtomicInteger counter) {
-        return r -> {
-            Thread t = new Thread(r);
-            t.setName(namePrefix + "-" + counter.incrementAndGet());
-            return t;
-        };
-    }
-
-    /*
-    private final ExecutorService threadPoolLoadedChunks;
-    private final ExecutorService threadPoolClusterDetermination; 
-    private final ThreadPoolExecutor threadPoolClusterCleaning;
-    private final ThreadPoolExecutor threadPoolClusterGenerating;
-    private final ThreadPoolExecutor threadPoolChunkEditing;
-
-    private final ThreadPoolExecutor threadPoolChunkProcessing;
-    */
-
-
     /** Constructor **/
     public OreClusterManager(Level level, ModRealTimeConfig config)
     {
@@ -197,87 +221,74 @@ public class OreClusterManager {
         this.config = config;
         this.chunkUtil = ManagedChunkUtility.getInstance(level);
         MANAGERS.put(level, this);
+        this.pipeline = new OreClusterPipeline(level.dimension().location().toString());
 
         this.existingClustersByType = new ConcurrentHashMap<>();
         this.tentativeClustersByType = new ConcurrentHashMap<>();
-        this.addedClustersByType = new ConcurrentHashMap<>();
+        this.addedClustersByType = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>());
         this.removedClustersByType = new ConcurrentHashMap<>();
-
-        this.loadedOreClusterChunks = new ConcurrentHashMap<>();
-        this.determinedSourceChunks = new ConcurrentLinkedSet<>();
-        this.determinedChunks = new ConcurrentSet<>();
-        this.completeChunks = new ConcurrentSet<>();
-        this.expiredChunks = new ConcurrentHashMap<>();
-        this.forceLoadedChunks = new ConcurrentHashMap<>();
-
-        this.chunksPendingHandling = new LinkedBlockingQueue<>();
-        this.chunksPendingDeterminations = new LinkedBlockingQueue<>();
-        this.chunksPendingCleaning = new LinkedBlockingQueue<>();
-        this.chunksPendingPreGeneration = new LinkedBlockingQueue<>();
-        this.chunksPendingGeneration = new LinkedBlockingQueue<>();
-        this.chunksPendingRegeneration = new ConcurrentSet<>();
-
-        this.initializedOreClusterChunks = new ConcurrentSet<>();
+        this.addedClusterChunksByType = new ConcurrentHashMap<>();
+
+        this.loadedOreClusterChunks = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>());
+        this.determinedSourceChunks = new ChunkKeySet();
+        this.determinedChunks = new ChunkKeySet();
+        this.completeChunks = new ChunkKeySet();
+        this.expiredChunks = Long2IntMaps.synchronize(new Long2IntOpenHashMap());
+        this.forceLoadedChunks = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>());
+
+        this.playerPriority = new PlayerChunkPriority();
+        this.chunksPendingHandling = newStageQueue(Stage.HANDLE);
+        this.chunksPendingDeterminations = newStageQueue(Stage.DETERMINE);
+        this.chunksPendingCleaning = newStageQueue(Stage.CLEAN);
+        this.chunksPendingPreGeneration = newStageQueue(Stage.PREGENERATE);
+        this.chunksPendingGeneration = newStageQueue(Stage.MANIFEST);
+        this.chunksPendingRegeneration = new ChunkKeySet();
+
+        this.initializedOreClusterChunks = LongSets.synchronize(new LongOpenHashSet());
         //this.chunksPendingManifestation = new ConcurrentHashMap<>();
 
         this.mainSpiral = new ChunkGenerationOrderHandler(null);
-        /*
-        //Thread pool needs to have one thread max, use Synchronous queue and discard policy
-        this.threadPoolLoadedChunks = new ThreadPoolExecutor(1, 1,
-        1L, TimeUnit.SECONDS, new SynchronousQueue<>(),
-         createThreadFactory("ChunkLoader", loadedChunksCount),
-         new ThreadPoolExecutor.DiscardPolicy());
-        
-        this.threadPoolClusterDetermination = new ThreadPoolExecutor(1, 1,
-         30L, TimeUnit.SECONDS, new SynchronousQueue<>(),
-         createThreadFactory("ClusterDeterminer", clusterDeterminationCount),
-         new ThreadPoolExecutor.DiscardPolicy());
-
-        this.threadPoolClusterCleaning = new ThreadPoolExecutor(1, 1,
-            30L, TimeUnit.SECONDS, new SynchronousQueue<>(),
-            createThreadFactory("ClusterCleaner", clusterCleaningCount),
-            new ThreadPoolExecutor.DiscardPolicy());
-
-        this.threadPoolClusterGenerating = new ThreadPoolExecutor(1, 1,
-            30L, TimeUnit.SECONDS, new SynchronousQueue<>(),
-            createThreadFactory("ClusterGenerator", clusterGeneratingCount),
-            new ThreadPoolExecutor.DiscardPolicy());
-
-        /*
-        this.threadPoolChunkProcessing = new ThreadPoolExecutor(1, 1,
-            300L, TimeUnit.SECONDS, new SynchronousQueue<>(), new ThreadPoolExecutor.DiscardPolicy());
-
-
-        this.threadPoolChunkEditing = new ThreadPoolExecutor(1, 1,
-            30L, TimeUnit.SECONDS, new SynchronousQueue<>(),
-            createThreadFactory("ChunkEditor", chunkEditingCount),
-            new ThreadPoolExecutor.DiscardPolicy());
-        */
-
         init(level);
         LoggerProject.logInit("002000", this.getClass().getName());
     }
 
+    private ChunkKeyQueue newStageQueue(Stage stage) {
+        String name = level.dimension().location() + ":" + stage.name();
+        return new ChunkKeyQueue(name, playerPriority, stage.queueHighWatermark);
+    }
+
     /** Get Methods **/
     public ModRealTimeConfig getConfig() {
         return config;
     }
 
-    public Map<String, ManagedOreClusterChunk> getLoadedOreClusterChunks() {
+    public Long2ObjectMap<ManagedOreClusterChunk> getLoadedOreClusterChunks() {
         return loadedOreClusterChunks;
     }
 
-    public ConcurrentHashMap<OreClusterId, Set<String>> getTentativeClustersByType() {
+    public ConcurrentHashMap<OreClusterId, LongSet> getTentativeClustersByType() {
         return tentativeClustersByType;
     }
 
-    public ConcurrentHashMap<OreClusterId, Set<String>> getExistingClustersByType() {
+    public ClusterSpatialIndex getClusterIndex() {
+        return clusterIndex;
+    }
+
+    public OreClusterRegenJob getRegenJob() {
+        return regenJob;
+    }
+
+    public int getRegenEpoch() {
+        return regenEpoch;
+    }
+
+    public ConcurrentHashMap<OreClusterId, LongSet> getExistingClustersByType() {
         return existingClustersByType;
     }
 
 
     public static void init(EventRegistrar reg) {
-        MANAGERS = new HashMap<>();
+        MANAGERS = new ConcurrentHashMap<>();
         reg.registerOnDataSave(OreClusterManager::save, EventPriority.High);
         reg.registerOnServerTick(TickType.ON_SINGLE_TICK, OreClusterManager::onSingletick);
         reg.registerOnServerTick(TickType.ON_1200_TICKS, OreClusterManager::on1200Ticks);
@@ -316,9 +327,10 @@ public class OreClusterManager {
         this.oreClusterCalculator = new OreClusterCalculator( this );
 
         config.getOreConfigs().forEach((oreType, oreConfig) -> {
-            existingClustersByType.put(oreType, new HashSet<>());
-            tentativeClustersByType.put(oreType, new HashSet<>());
-            removedClustersByType.put(oreType, new HashSet<>());
+            existingClustersByType.put(oreType, existingTypeIndex.newSet(oreType));
+            tentativeClustersByType.put(oreType, tentativeTypeIndex.newSet(oreType));
+            removedClustersByType.put(oreType, new ChunkKeySet());
+            addedClusterChunksByType.put(oreType, new ChunkKeySet());
         });
         this.threadLoad = new Thread(this::load);
         this.threadLoad.start();
@@ -326,9 +338,10 @@ public class OreClusterManager {
 
 
     /**
-     * Description: Sweeps loaded ore cluster chunks for any that
-     * have been loaded for more than 300s and are still in DETERMINED status
-     * @param chunk
+     * Description: Expires loaded ore cluster chunks that have not been seen loaded for
+     * EXPIRY_TICKS. Each chunk has a deadline in expiryWheel that is pushed back whenever the chunk
+     * is loaded or unloaded, so a sweep only visits chunks whose deadline has passed.
+     * Expired chunks are marked dirty and handed to the evictions queue, they are removed once their save is confirmed
      * chunkLifetime
      * chunkDelete
      * chunkExpire
@@ -336,87 +349,144 @@ public class OreClusterManager {
      */
      private static final Long MAX_DETERMINED_CHUNK_LIFETIME_MILLIS = (DEBUG)
         ? 30_000 : 150_000L;
-    private static final Long MIN_EXPIRATION_CHECK_TICK_ALIVE_COUNT = (DEBUG)
-        ? 120L : 1200L;
-     //timeout
-     private static final Long SLEEP_TIME_PER_CHUNK_MILLIS = (DEBUG)
-        ? 100L : 100L;
+    private static final long EXPIRY_TICKS = MAX_DETERMINED_CHUNK_LIFETIME_MILLIS / 50;
     private static final Long MAX_EXPIRATIONS = 100L;
+    /** Expired chunks waiting for their data to be saved before removal **/
+    private static final int MAX_PENDING_EVICTIONS = 1024;
+    private static final int MAX_EVICTIONS_PER_TICK = 64;
+    /** Ticks an evicting chunk waits for its serialization before it is marked dirty again **/
+    private static final long EVICTION_SAVE_TIMEOUT_TICKS = 1200;
     private void watchLoadedChunkExpiration()
     {
-            boolean errorThrown = false;
-            //while(managerRunning)
-            {
-                try {
-                    if (this.loadedOreClusterChunks.isEmpty())
-                        return;
-
-                     //Get current time
-                    Long systemTime = System.currentTimeMillis();
-                    Long currentTick = GeneralConfig.getInstance().getTotalTickCount();
-                    List<ManagedOreClusterChunk> expired_chunks;
-
-                    Set<String> oldChunks = loadedOreClusterChunks.values().stream()
-                        .filter(c -> currentTick - c.getTickLoaded() > MIN_EXPIRATION_CHECK_TICK_ALIVE_COUNT)
-                        .map(ManagedOreClusterChunk::getId)
-                        .collect(Collectors.toSet());
-
-                    //We need to limit because we will be force loading these chunks so they can save
-                    expired_chunks = loadedOreClusterChunks.values().stream()
-                        .filter(c -> oldChunks.contains(c.getId()))
-                        .filter(c -> !c.updateTimeLastLoaded(systemTime))
-                        .filter(c -> (systemTime - c.getTimeLastLoaded()) > MAX_DETERMINED_CHUNK_LIFETIME_MILLIS)
-                        .limit(MAX_EXPIRATIONS)
-                        .collect(Collectors.toList());
-
-                    if (!expired_chunks.stream().filter(c -> c.getId().equals(TEST_ID)).toList().isEmpty()) {
-                        int i = 0;
-                    }
+        try {
+             //Get current time
+            Long systemTime = System.currentTimeMillis();
+            long currentTick = GeneralConfig.getInstance().getTotalTickCount();
+            List<ManagedOreClusterChunk> expired_chunks = new ArrayList<>();
+
+            //Limit each batch, expired chunks are force saved before they are removed
+            expiryWheel.advance(currentTick, chunkId -> {
+                ManagedOreClusterChunk c = loadedOreClusterChunks.get(chunkId);
+                if( c == null ) return;
+                if( c.updateTimeLastLoaded(systemTime) )
+                    expiryWheel.schedule(chunkId, currentTick + EXPIRY_TICKS);
+                else if( expired_chunks.size() >= MAX_EXPIRATIONS || evictions.size() >= MAX_PENDING_EVICTIONS )
+                    expiryWheel.schedule(chunkId, currentTick + 1);
+                else
+                    expired_chunks.add(c);
+            });
 
-                    for (ManagedOreClusterChunk chunk : expired_chunks) {
-                        String id = chunk.getId();
-                        LevelChunk levelChunk = chunkUtil.getChunk(id,false);
-                        if( levelChunk != null) levelChunk.setUnsaved(true);
-                        sleep(SLEEP_TIME_PER_CHUNK_MILLIS ); //Sleep for chunks to write data out and unload
-                    }
+            //Mark the batch dirty, chunks are removed in evictSavedChunks once their save is confirmed
+            for (ManagedOreClusterChunk chunk : expired_chunks) {
+                LoggerProject.logDebug("002004", "Chunk " + chunk.getId() + " has expired");
+                if( !evictions.markPendingSave(chunk.getKey(), currentTick) ) continue;
+                LevelChunk levelChunk = chunkUtil.getChunk(chunk.getId(),false);
+                if( levelChunk != null) levelChunk.setUnsaved(true);
+                else if( isSavedSinceUnload(chunk) ) evictions.onSerialized(chunk.getKey());
+            }
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            //throw new RuntimeException("Uncaught", e);
+        }
+    }
 
-                    for (ManagedOreClusterChunk chunk : expired_chunks) {
-                        LoggerProject.logDebug("002004", "Chunk " + chunk.getId() + " has expired");
-                        this.editManagedChunk(chunk, this::removeManagedChunk);
-                    }
+    /**
+     * The vanilla chunk save on unload serializes the chunk after the unload event, nothing writes a
+     * ManagedOreClusterChunk while its chunk is unloaded
+     * @param chunk
+     * @return true if chunk was serialized since it was last unloaded
+     */
+    private static boolean isSavedSinceUnload(ManagedOreClusterChunk chunk) {
+        long unloaded = chunk.getTimeUnloaded();
+        return unloaded > 0 && chunk.getTimeSerialized() >= unloaded;
+    }
 
-                }
-                catch (InterruptedException e) {
-                    //continue
-                }
-                catch (Exception e) {
-                    e.printStackTrace();
-                    //throw new RuntimeException("Uncaught", e);
-                }
+    /**
+     * Evicting chunks not serialized within EVICTION_SAVE_TIMEOUT_TICKS are marked dirty again so the next
+     * chunk save writes them. A chunk that is no longer loaded can't be saved, it leaves the evictions queue
+     * and stays in memory until it expires again
+     * @param currentTick
+     */
+    private void retryTimedOutEvictions(long currentTick)
+    {
+        LongList timedOut = evictions.takeTimedOut(currentTick, EVICTION_SAVE_TIMEOUT_TICKS);
+        for(int i = 0; i < timedOut.size(); i++)
+        {
+            long chunkId = timedOut.getLong(i);
+            ManagedOreClusterChunk chunk = loadedOreClusterChunks.get(chunkId);
+            LevelChunk levelChunk = (chunk == null) ? null : chunkUtil.getChunk(chunk.getId(), false);
+            if( levelChunk != null ) {
+                levelChunk.setUnsaved(true);
+                continue;
+            }
+            evictions.cancel(chunkId);
+            if( chunk != null ) touchExpiry(chunkId);
+        }
+    }
 
+    /**
+     * Removes expired chunks whose data has been persisted, see ChunkEvictionQueue. Runs on the server thread each tick
+     */
+    private void evictSavedChunks()
+    {
+        retryTimedOutEvictions(GeneralConfig.getInstance().getTotalTickCount());
+        for(int i = 0; i < MAX_EVICTIONS_PER_TICK; i++)
+        {
+            long chunkId = evictions.pollConfirmed();
+            if(chunkId == ChunkKey.NONE) return;
+            ManagedOreClusterChunk chunk = loadedOreClusterChunks.get(chunkId);
+            if(chunk == null) continue;
+            if(!editManagedChunk(chunk, null, this::removeManagedChunk)) {
+                evictions.retryConfirmed(chunkId);     //claimed by a worker, retry next tick
+                return;
             }
+            chunksEvicted++;
+        }
+    }
 
-        int i = 0;
+    /**
+     * Completion signal from ManagedOreClusterChunk::serializeNBT
+     * @param chunkId
+     */
+    public void onChunkSerialized(long chunkId) {
+        evictions.onSerialized(chunkId);
+    }
+
+    /**
+     * Adds or replaces a loaded ManagedOreClusterChunk and pushes back its expiry deadline
+     * @param chunkId
+     * @param chunk
+     */
+    private void putLoadedChunk(long chunkId, ManagedOreClusterChunk chunk)
+    {
+        loadedOreClusterChunks.put(chunkId, chunk);
+        touchExpiry(chunkId);
+    }
+
+    private void touchExpiry(long chunkId) {
+        expiryWheel.schedule(chunkId, GeneralConfig.getInstance().getTotalTickCount() + EXPIRY_TICKS);
     }
 
     private void removeManagedChunk(ManagedOreClusterChunk c )
     {
-        String chunkId = c.getId();
+        long chunkId = c.getKey();
 
         if( !ManagedOreClusterChunk.isComplete(c) ) {
-            Integer expiryCount = expiredChunks.get(chunkId);
-            if( expiryCount == null ) {
-                expiredChunks.put(chunkId, 0);
-                expiryCount = 0;
-            }
-            expiredChunks.put(chunkId, expiryCount + 1 );
+            expiredChunks.put(chunkId, expiredChunks.get(chunkId) + 1 );
         }
 
         loadedOreClusterChunks.remove(chunkId);
+        expiryWheel.cancel(chunkId);
+        OreClusterRegenManager regenManager = OreClusterRegenManager.getInstance();
+        if( regenManager != null ) regenManager.cancelScheduledRegen(level, chunkId);
+        evictions.cancel(chunkId);
         chunksPendingHandling.remove(chunkId);
         chunksPendingDeterminations.remove(chunkId);
         chunksPendingCleaning.remove(chunkId);
         chunksPendingPreGeneration.remove(chunkId);
+        chunksPendingGeneration.remove(chunkId);
+        waitList.remove(chunkId);
         //chunksPendingManifestation.remove(chunkId);
 
     }
@@ -429,13 +499,13 @@ public class OreClusterManager {
      */
     public void addOrUpdatedLoadedChunk(ManagedOreClusterChunk managedChunk)
     {
-        String chunkId = managedChunk.getId();
-        if(chunkId.equals(TEST_ID)) {
+        long chunkId = managedChunk.getKey();
+        if(chunkId == TEST_KEY) {
             int i = 0;
         }
 
-        loadedOreClusterChunks.put(chunkId, managedChunk.getEarliest(loadedOreClusterChunks));
-        chunksPendingHandling.add(managedChunk.getId());
+        putLoadedChunk(chunkId, managedChunk.getEarliest(loadedOreClusterChunks));
+        chunksPendingHandling.add(chunkId);
         //LoggerProject.logInfo("002001", "Chunk " + chunkId + " added to queue size " + chunksPendingHandling.size());
     }
 
@@ -444,10 +514,14 @@ public class OreClusterManager {
      * Otherwise, the chunk is processed according to its status.
      * @param chunkId
      */
-    public void onLoadedChunkId(String chunkId)
+    public void onLoadedChunkId(long chunkId)
     {
         this.LOADS++;
+        //A chunk loaded again while it waits for eviction stays in memory
+        evictions.cancel(chunkId);
+        if( loadedOreClusterChunks.containsKey(chunkId) ) touchExpiry(chunkId);
         chunksPendingHandling.add(chunkId);
+        waitList.release(chunkId, this::requeue);
     }
 
     /**
@@ -456,9 +530,12 @@ public class OreClusterManager {
      */
     public void onChunkUnloaded(ChunkAccess chunk)
     {
-        String chunkId = ChunkUtil.getId(chunk);
+        long chunkId = ChunkKey.of(chunk);
         ManagedOreClusterChunk managedChunk = loadedOreClusterChunks.get(chunkId);
-        if( managedChunk != null ) managedChunk.setTimeUnloaded();
+        if( managedChunk != null ) {
+            managedChunk.setTimeUnloaded();
+            touchExpiry(chunkId);
+        }
         this.UNLOADS++;
     }
 
@@ -471,9 +548,10 @@ public class OreClusterManager {
      * 3. If the chunkId does not exist in exploredChunks, queue a batch
      *
      */
-    private void handleChunkLoaded(String chunkId)
+    private void handleChunkLoaded(long chunkId)
     {
-        if( chunkId.equals(TEST_ID) ) {
+        ensureChunkRegionLoaded(chunkId);
+        if( chunkId == TEST_KEY ) {
             int i = 0;
         }
 
@@ -482,17 +560,27 @@ public class OreClusterManager {
         {
             if( completeChunks.contains(chunkId) )
                 return;
+            if( !admitLoadedChunk(chunkId) )
+                return;
             chunk = ManagedOreClusterChunk.getInstance(this.level, chunkId);
-            loadedOreClusterChunks.put(chunkId, chunk);
+            putLoadedChunk(chunkId, chunk);
 
             if( determinedChunks.contains(chunkId) )
                 chunk.setStatus(OreClusterStatus.DETERMINED);
             handleChunkLoaded(chunkId);
             return;
-        } else if( chunk.hasClusters() ) {
+        }
+
+        //Clusters not generated yet will be generated from the current epoch's state
+        if( chunk.getStatus().ordinal() < OreClusterStatus.GENERATED.ordinal() )
+            chunk.setRegenEpoch(regenEpoch);
+
+        if( chunk.hasClusters() ) {
             chunk.getClusterTypes().forEach((oreType, pos) -> {
-                if(pos != null)
+                if(pos != null) {
                     existingClustersByType.get(oreType).add(chunkId);
+                    clusterIndex.put(oreType, chunkId, pos);
+                }
             });
         }
 
@@ -518,7 +606,12 @@ public class OreClusterManager {
             || ManagedOreClusterChunk.isRegenerated(chunk) )
         {
             //LoggerProject.logDebug("002007","Chunk " + chunkId + " has been cleaned");
-            if( chunk.hasClusters() )
+            if( chunk.hasClusters() && ManagedOreClusterChunk.isPregenerated(chunk) && chunk.hasBlockUpdates() )
+            {
+                //Block updates restored from the chunk's cluster layouts, only manifestation is left
+                chunksPendingGeneration.add(chunkId);
+            }
+            else if( chunk.hasClusters() )
             {
                 if( ManagedOreClusterChunk.isRegenerated(chunk))
                     this.chunksPendingRegeneration.add(chunkId);
@@ -529,6 +622,9 @@ public class OreClusterManager {
         else if( this.chunksPendingRegeneration.contains(chunkId) ) {
             this.triggerRegen(chunkId, false);
         }
+        else if( isRegenDue(chunk) ) {
+            this.regenIfDue(chunk);
+        }
         else if( ManagedOreClusterChunk.isGenerated(chunk) )
         {
             //LoggerProject.logDebug("002008","Chunk " + chunkId + " has been generated");
@@ -538,9 +634,41 @@ public class OreClusterManager {
         {
             //LoggerProject.logDebug("002009","Chunk " + chunkId + " is complete");
             completeChunks.add(chunkId);
-            this.editManagedChunk(chunk, this::removeManagedChunk);
+            this.editManagedChunk(chunk, Stage.HANDLE, this::removeManagedChunk);
         }
 
+        //Generated chunks wait on their regen deadline while loaded
+        if( chunk.getStatus().ordinal() >= OreClusterStatus.GENERATED.ordinal()
+            && loadedOreClusterChunks.get(chunkId) == chunk )
+            scheduleRegenDeadline(chunk, false);
+
+    }
+
+    /**
+     * Admission control for new ManagedOreClusterChunks. Once loadedOreClusterChunks reaches MAX_LOADED_CHUNKS,
+     * new chunks are deferred on the handling stage until expiry brings the map back under LOADED_CHUNKS_LOW_WATERMARK
+     * @param chunkId
+     * @return true if a new ManagedOreClusterChunk may be created for chunkId
+     */
+    private boolean admitLoadedChunk(long chunkId)
+    {
+        int loaded = loadedOreClusterChunks.size();
+        if( !loadedChunksThrottled && loaded >= MAX_LOADED_CHUNKS ) {
+            loadedChunksThrottled = true;
+            loadedChunksHighWatermarkCrossings++;
+            LoggerProject.logWarning("002012", "Loaded ore cluster chunks reached " + MAX_LOADED_CHUNKS
+                + " in " + level.dimension().location() + ", deferring new chunks");
+        }
+        else if( loadedChunksThrottled && loaded <= LOADED_CHUNKS_LOW_WATERMARK ) {
+            loadedChunksThrottled = false;
+            LoggerProject.logInfo("002013", "Loaded ore cluster chunks back under " + LOADED_CHUNKS_LOW_WATERMARK
+                + " in " + level.dimension().location() + ", admitting new chunks");
+        }
+
+        if( !loadedChunksThrottled ) return true;
+        loadedChunksDeferred++;
+        waitList.defer(chunkId, Stage.HANDLE, GeneralConfig.getInstance().getTotalTickCount(), ChunkWaitList.MAX_DEFER_TICKS);
+        return false;
     }
 
     //* WORKER THREADS *//
@@ -558,12 +686,13 @@ public class OreClusterManager {
         try
         {
             int tries = 0;
-            while(managerRunning && tries < MAX_FAILURES)
+            while(managerRunning && tries < MAX_FAILURES && (tries == 0 || tickBudget.hasTime()))
             {
                 tries++;
-                String chunkId = chunksPendingHandling.poll();
-                if(chunkId == null) return;
+                long chunkId = chunksPendingHandling.poll();
+                if(chunkId == ChunkKey.NONE) return;
                 handleChunkLoaded(chunkId);
+                tickBudget.countProcessed();
             }
         }
         /*catch (InterruptedException e)
@@ -581,7 +710,11 @@ public class OreClusterManager {
     }
 
     private static final int MAX_LOADED_CHUNKS = 64_000;
+    private static final int LOADED_CHUNKS_LOW_WATERMARK = MAX_LOADED_CHUNKS * 7 / 8;
     private static final int MAX_FAILURES = 64; //Skip unloaded chunks quickly
+    private static final int CHUNK_NOT_READY_RETRY_TICKS = 20;
+    private static final int CLAIM_RETRY_TICKS = 1;
+    private static final int REPRIORITIZE_PER_TICK = 256;
     private void workerThreadDetermineClusters()
     {
         if (!WORKER_THREAD_ENABLED.get("workerThreadDetermineClusters")) {
@@ -591,16 +724,22 @@ public class OreClusterManager {
         Throwable thrown = null;
         try {
             int tries = 0;
-            while(managerRunning && tries < MAX_FAILURES)
+            while(managerRunning && tries < MAX_FAILURES && (tries == 0 || tickBudget.hasTime()))
             {
                 tries++;
-                String chunkId = chunksPendingDeterminations.poll();
-                if(chunkId == null) continue;
+                long chunkId = chunksPendingDeterminations.poll();
+                if(chunkId == ChunkKey.NONE) return;
+                ManagedOreClusterChunk chunk = loadedOreClusterChunks.get(chunkId);
+                if(chunk == null || !chunk.testChunkLoadedAndEditable()) {
+                    waitForChunk(chunkId, chunk, Stage.DETERMINE);
+                    continue;
+                }
                 handleChunkDetermination(chunkId);
                 if (this.determinedChunks.contains(chunkId)) {
-                    break;
+                    tickBudget.countProcessed();
+                    continue;
                 }
-                chunksPendingDeterminations.add(chunkId);
+                waitForChunk(chunkId, chunk, Stage.DETERMINE);
             }
 
         } /*catch (InterruptedException e) {
@@ -635,18 +774,21 @@ public class OreClusterManager {
         Throwable thrown = null;
 
         try {
-            //while(managerRunning)
+            int tries = 0;
+            while(managerRunning && tries < MAX_FAILURES && (tries == 0 || tickBudget.hasTime()))
             {
-                String chunkId = chunksPendingCleaning.poll();
-                if(chunkId == null) return;
+                tries++;
+                long chunkId = chunksPendingCleaning.poll();
+                if(chunkId == ChunkKey.NONE) return;
                 ManagedOreClusterChunk chunk = loadedOreClusterChunks.get(chunkId);
                 if (chunk == null || !chunk.hasChunk()) {
-                    chunksPendingCleaning.add(chunkId); return;
+                    waitForChunk(chunkId, chunk, Stage.CLEAN); continue;
                 }
 
-                editManagedChunk(chunk, this::handleChunkCleaning);
+                if(!editManagedChunk(chunk, Stage.CLEAN, this::handleChunkCleaning)) continue;
 
-                if(!isCleaned(chunk)) chunksPendingCleaning.add(chunkId);
+                if(!isCleaned(chunk)) waitForChunk(chunkId, chunk, Stage.CLEAN);
+                else tickBudget.countProcessed();
             }
         } /*catch (InterruptedException e) {
             // Handle interruption
@@ -659,7 +801,8 @@ public class OreClusterManager {
 
 
     /**
-     * Description: Polls prepared chunks from chunksPendingGenerationQueue
+     * Description: Polls prepared chunks from chunksPendingPreGeneration. Cluster shapes are computed
+     * on the pipeline worker pool, finished results are committed to their chunk here on the server thread
      */
     private void workerThreadGenerateClusters() {
         if (!WORKER_THREAD_ENABLED.get("workerThreadGenerateClusters")) {
@@ -669,19 +812,31 @@ public class OreClusterManager {
         Throwable thrown = null;
 
         try {
-            //while(managerRunning)
+            pipeline.drainCompletions(tickBudget);
+
+            int tries = 0;
+            while(managerRunning && tries < MAX_FAILURES && (tries == 0 || tickBudget.hasTime()))
             {
-                String chunkId = chunksPendingPreGeneration.poll();
-                if(chunkId == null) return;
+                tries++;
+                if(pipeline.inFlight() >= OreClusterPipeline.MAX_IN_FLIGHT) return;
+                long chunkId = chunksPendingPreGeneration.poll();
+                if(chunkId == ChunkKey.NONE) return;
+                if(pipeline.isInFlight(chunkId)) continue;
                 ManagedOreClusterChunk chunk = loadedOreClusterChunks.get(chunkId);
 
-                if (chunk != null && chunk.hasReadyClusters()) {
-                    long start = System.nanoTime();
-                    editManagedChunk(chunk, this::handleChunkClusterPreGeneration);
-                    long end = System.nanoTime();
-                    if(DEBUG) {
-                        THREAD_TIMES.get("handleChunkClusterPreGeneration").add((end - start) / 1_000_000);
-                    }
+                if (chunk != null && chunk.hasReadyClusters() && canPreGenerate(chunk)) {
+                    final boolean onlyRegenerateOres = this.chunksPendingRegeneration.contains(chunkId);
+                    final PreGenerationInput input = snapshotChunkClusterPreGeneration(chunk, onlyRegenerateOres);
+                    boolean submitted = pipeline.submit(Stage.PREGENERATE, chunkId,
+                        () -> computeChunkClusterPreGeneration(input),
+                        (clusters) -> {
+                            //chunk was unloaded while its clusters were computed
+                            if(clusters == null || loadedOreClusterChunks.get(chunkId) != chunk) return;
+                            if(editManagedChunk(chunk, Stage.PREGENERATE,
+                                c -> commitChunkClusterPreGeneration(c, onlyRegenerateOres, clusters)))
+                                tickBudget.countProcessed();
+                        });
+                    if(!submitted) chunksPendingPreGeneration.add(chunkId);
                 }
             }
         } /*catch (InterruptedException e) {
@@ -704,27 +859,28 @@ public class OreClusterManager {
 
         try {
             int tries = 0;
-            while(managerRunning && tries < MAX_FAILURES)
+            while(managerRunning && tries < MAX_FAILURES && (tries == 0 || tickBudget.hasTime()))
             {
                 tries++;
-                String chunkId = chunksPendingGeneration.poll();
-                if(chunkId == null) return;
+                long chunkId = chunksPendingGeneration.poll();
+                if(chunkId == ChunkKey.NONE) return;
 
                 ManagedOreClusterChunk chunk = loadedOreClusterChunks.get(chunkId);
                 if(chunk == null || !isChunkReady(chunk)) {
-                    chunksPendingGeneration.add(chunkId);
+                    waitForChunk(chunkId, chunk, Stage.MANIFEST);
                     continue;
                 }
                 chunk.setReady(true);
 
                 long start = System.nanoTime();
-                editManagedChunk(chunk, this::handleChunkManifestation);
+                boolean edited = editManagedChunk(chunk, Stage.MANIFEST, this::handleChunkManifestation);
                 long end = System.nanoTime();
                 if(DEBUG) {
                     THREAD_TIMES.get("handleChunkManifestation").add((end - start) / 1_000_000);
                 }
 
-                if(chunk.isReady()) chunksPendingGeneration.add(chunkId);
+                if(edited && chunk.isReady()) chunksPendingGeneration.add(chunkId);
+                else if(edited) tickBudget.countProcessed();
 
             }
 
@@ -738,13 +894,43 @@ public class OreClusterManager {
     }
 
 
+    /**
+     * Parks stage work for a chunk that is not loaded until its load signal arrives in onLoadedChunkId,
+     * work for a chunk that is loaded but not yet ready is retried after CHUNK_NOT_READY_RETRY_TICKS
+     * @param chunkId
+     * @param chunk may be null if no ManagedOreClusterChunk is loaded
+     * @param stage
+     */
+    private void waitForChunk(long chunkId, @Nullable ManagedOreClusterChunk chunk, Stage stage)
+    {
+        if( chunk == null || !chunk.hasChunk() )
+            waitList.park(chunkId, stage);
+        else
+            waitList.defer(chunkId, stage, GeneralConfig.getInstance().getTotalTickCount(), CHUNK_NOT_READY_RETRY_TICKS);
+    }
+
+    private void requeue(long chunkId, Stage stage) {
+        getStageQueue(stage).add(chunkId);
+    }
+
+    private ChunkKeyQueue getStageQueue(Stage stage)
+    {
+        switch (stage) {
+            case DETERMINE: return chunksPendingDeterminations;
+            case CLEAN: return chunksPendingCleaning;
+            case PREGENERATE: return chunksPendingPreGeneration;
+            case MANIFEST: return chunksPendingGeneration;
+            default: return chunksPendingHandling;
+        }
+    }
+
     private boolean isChunkReady(ManagedOreClusterChunk chunk)
     {
         if (!chunk.hasChunk()) {
             return false;
         }
 
-        if( !ManagedChunkUtility.isChunkFullyLoaded(level, chunk.getId() ) ) {
+        if( !chunk.testChunkLoadedAndEditable() ) {
             return false;
         }
 
@@ -770,12 +956,12 @@ public class OreClusterManager {
      * handleChunkDetermination
      * handleDetermineChunks
      */
-    private void handleChunkDetermination(String chunkId)
+    private void handleChunkDetermination(long chunkId)
     {
         // 1. Get and validate chunk is loaded
         ManagedOreClusterChunk managedChunk = this.loadedOreClusterChunks.get(chunkId);
         if( managedChunk == null ) return;
-        if( !chunkUtil.isChunkFullyLoaded(chunkId) ) return;
+        if( !chunkUtil.isChunkFullyLoaded(managedChunk.getId()) ) return;
 
         if( managedChunk.getBiomes().isEmpty() ) {
             if(!managedChunk.loadBiomes(managedChunk.getChunk())) return;
@@ -792,7 +978,7 @@ public class OreClusterManager {
 
         // 3. Use spawn rates to determine final clusters
         List<OreClusterId> finalClusters = new ArrayList<>();
-        long loc = HBUtil.ChunkUtil.getChunkPos1DMap(chunkId);
+        long loc = HBUtil.ChunkUtil.getChunkPos1DMap(managedChunk.getId());     //String id keeps seeding stable
         Random rand = new Random((loc + 31) * (ModRealTimeConfig.CLUSTER_SEED+31));
         validConfigs.forEach( id -> {
             OreClusterConfigModel oreConfig = config.getOreConfig(id);
@@ -808,33 +994,34 @@ public class OreClusterManager {
         if(!finalClusters.isEmpty())
             managedChunk.addClusterTypes(finalClusters);
 
-        if(DEBUG) LoggerProject.logDebug("002008", "Queued " + chunkId + " for cluster determination");
+        if(DEBUG) LoggerProject.logDebug("002008", "Queued " + managedChunk.getId() + " for cluster determination");
     }
 
     @Deprecated
-    private void handleChunkDetermination(int batchSize, String chunkId) 
+    private void handleChunkDetermination(int batchSize, long chunkId)
     {
-        LoggerProject.logDebug("002008", "Queued " + chunkId + " for cluster determination");
+        LoggerProject.logDebug("002008", "Queued " + ChunkKey.toId(chunkId) + " for cluster determination");
         determinedSourceChunks.add(chunkId);
-        LinkedHashSet<String> chunkIds = getBatchedChunkList(batchSize, chunkId);
+        LongLinkedOpenHashSet chunkIds = getBatchedChunkList(batchSize, chunkId);
         //long step1Time = System.nanoTime();
 
         //Map<ChunkId, Clusters>
-        Map<String, List<OreClusterId>> clusters;
-        clusters = oreClusterCalculator.calculateClusterLocations(chunkIds.stream().toList() , randSeqClusterPositionGen);
+        Long2ObjectMap<List<OreClusterId>> clusters;
+        clusters = oreClusterCalculator.calculateClusterLocations(new LongArrayList(chunkIds) , randSeqClusterPositionGen);
         //long step2Time = System.nanoTime();
 
         // #3. Add clusters to determinedClusters
-        for( String id: chunkIds)
+        for( long id: chunkIds)
         {
             if( this.determinedChunks.contains(id) ) continue;
 
-            if( id.equals(TEST_ID)) {
+            if( id == TEST_KEY) {
                 int i = 0;
             }
         //Create clusters for chunks that aren't loaded yet
-            ManagedOreClusterChunk chunk = loadedOreClusterChunks.getOrDefault(id, ManagedOreClusterChunk.getInstance(level, id) );
-            this.loadedOreClusterChunks.put(id, chunk);
+            ManagedOreClusterChunk chunk = loadedOreClusterChunks.get(id);
+            if( chunk == null ) chunk = ManagedOreClusterChunk.getInstance(level, id);
+            this.putLoadedChunk(id, chunk);
 
             if( clusters.get(id) != null )
                 chunk.addClusterTypes(clusters.get(id));
@@ -846,12 +1033,12 @@ public class OreClusterManager {
 
 
         // #4. Add clusters to tenativeClustersByType
-        for( Map.Entry<String, List<OreClusterId>> clusterChunk : clusters.entrySet())
+        for( Long2ObjectMap.Entry<List<OreClusterId>> clusterChunk : clusters.long2ObjectEntrySet())
         {
             if( clusterChunk.getValue() == null ) continue;
             for( OreClusterId clusterOreType : clusterChunk.getValue() )
             {
-                tentativeClustersByType.get(clusterOreType).add(clusterChunk.getKey());
+                tentativeClustersByType.get(clusterOreType).add(clusterChunk.getLongKey());
             }
         }
 
@@ -927,8 +1114,9 @@ public class OreClusterManager {
                     for(OreClusterId b : noOresFoundOnClean)
                     {
                         chunk.getClusterTypes().remove(b);
-                        tentativeClustersByType.get(b).remove(chunk.getId());
-                        removedClustersByType.get(b).add(chunk.getId());
+                        tentativeClustersByType.get(b).remove(chunk.getKey());
+                        clusterIndex.remove(b, chunk.getKey());
+                        removedClustersByType.get(b).add(chunk.getKey());
                     }
                     missingOriginalsCleaned++;
 
@@ -938,7 +1126,7 @@ public class OreClusterManager {
                 if( chunk.hasClusters() )
                 {
                     oreClusterCalculator.cleanChunkSelectClusterPosition(chunk);
-                    this.chunksPendingPreGeneration.put(chunk.getId());
+                    this.chunksPendingPreGeneration.add(chunk.getKey());
                 }
 
                 //3. Cleans chunk of all ores discovered in the findAllOres method and stored in chunk.getOriginalOres()
@@ -947,7 +1135,7 @@ public class OreClusterManager {
 
             //4. Set the chunk status to CLEANED
             chunk.setStatus(OreClusterStatus.CLEANED);
-            if(!chunk.hasClusters()) chunksPendingGeneration.add(chunk.getId());
+            if(!chunk.hasClusters()) chunksPendingGeneration.add(chunk.getKey());
 
             //5. Set the originalOres array to null to free up memory
             chunk.clearOriginalOres();
@@ -992,40 +1180,190 @@ public class OreClusterManager {
      */
     private void handleChunkClusterPreGeneration(ManagedOreClusterChunk chunk)
     {
-        
-        if( chunk == null || chunk.getChunk(false) == null )
+        if( !canPreGenerate(chunk) )
             return;
 
+        boolean onlyRegenerateOres = this.chunksPendingRegeneration.contains(chunk.getKey());
+        commitChunkClusterPreGeneration(chunk, onlyRegenerateOres,
+            computeChunkClusterPreGeneration(snapshotChunkClusterPreGeneration(chunk, onlyRegenerateOres)));
+    }
+
+    private boolean canPreGenerate(ManagedOreClusterChunk chunk)
+    {
+        if( chunk == null || chunk.getChunk(false) == null )
+            return false;
+
         if(chunk.getClusterTypes() == null || chunk.getClusterTypes().size() == 0)
+            return false;
+
+        return true;
+    }
+
+    /**
+     * Everything the compute half of pregeneration reads, copied on the server thread so the
+     * pipeline worker never touches the ManagedOreClusterChunk, its LevelChunk or live block states
+     */
+    private static class PreGenerationInput
+    {
+        //Source position of each cluster to pregenerate in chunk order, null for a cluster without one
+        final Map<OreClusterId, BlockPos> sources = new LinkedHashMap<>();
+        final Map<OreClusterId, ClusterLayout> layouts = new HashMap<>();
+        ChunkPos pos;
+        ChunkSectionSnapshot blocks;
+    }
+
+    /**
+     * Snapshot half of pregeneration, runs on the server thread. Copies the cluster types, stored
+     * layouts and the chunk sections that clusters generated from scratch will read.
+     * Regenerating clusters with a stored layout are left out, the commit step diffs them
+     * @param chunk
+     * @param onlyRegenerateOres
+     * @return null if the chunk can't be pregenerated
+     */
+    private PreGenerationInput snapshotChunkClusterPreGeneration(ManagedOreClusterChunk chunk, boolean onlyRegenerateOres)
+    {
+        if( !canPreGenerate(chunk) )
+            return null;
+
+        PreGenerationInput input = new PreGenerationInput();
+        input.pos = chunk.getChunkPos();
+        int minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+        for( Map.Entry<OreClusterId, BlockPos> cluster : chunk.getClusterTypes().entrySet() )
+        {
+            OreClusterId oreType = cluster.getKey();
+            OreClusterConfigModel model = this.config.getOreConfigModel(oreType);
+            if( model == null ) continue;
+            //1. If we are regenerating, skip any clusters in this chunk that dont' regenerate
+            if( onlyRegenerateOres && !model.oreClusterDoesRegenerate ) continue;
+            if( isLayoutRegen(chunk, oreType, onlyRegenerateOres) ) continue;
+
+            BlockPos sourcePos = cluster.getValue();
+            input.sources.put(oreType, sourcePos);
+            if( sourcePos == null ) continue;
+
+            ClusterLayout layout = chunk.getClusterLayout(oreType);
+            if( layout != null ) {
+                input.layouts.put(oreType, layout);
+                continue;
+            }
+
+            //Cluster shapes reach at most their largest dimension from the source
+            TripleInt vol = model.oreClusterVolume;
+            int reach = Math.max(vol.x, Math.max(vol.y, vol.z)) + 1;
+            minY = Math.min(minY, sourcePos.getY() - reach);
+            maxY = Math.max(maxY, sourcePos.getY() + reach);
+        }
+
+        if( minY <= maxY ) {
+            LevelChunk levelChunk = chunk.getChunk(false);
+            if( levelChunk == null ) return null;
+            input.blocks = ChunkSectionSnapshot.of(levelChunk, minY, maxY);
+        }
+        return input;
+    }
+
+    /**
+     * Compute half of pregeneration, only reads its snapshot so it may run on a pipeline worker.
+     * Maps each cluster type to its generated positions; a null value marks a cluster with no
+     * source position, an empty list marks a cluster that failed to generate.
+     *
+     * A cluster with a stored ClusterLayout is not generated again, it maps to every layout position
+     * @param input taken by snapshotChunkClusterPreGeneration
+     * @return
+     */
+    private Map<OreClusterId, List<Pair<BlockState, BlockPos>>> computeChunkClusterPreGeneration(PreGenerationInput input)
+    {
+        if( input == null )
+            return null;
+
+        long start = System.nanoTime();
+        Map<OreClusterId, List<Pair<BlockState, BlockPos>>> clusters = new LinkedHashMap<>();
+        for( Map.Entry<OreClusterId, BlockPos> cluster : input.sources.entrySet() )
+        {
+            OreClusterId oreType = cluster.getKey();
+            BlockPos sourcePos = cluster.getValue();
+            if( sourcePos == null ) {
+                clusters.put(oreType, null);
+                continue;
+            }
+
+            ClusterLayout layout = input.layouts.get(oreType);
+            if( layout != null ) {
+                clusters.put(oreType, layout.positions(input.pos));
+                continue;
+            }
+
+            List<Pair<BlockState, BlockPos>> clusterPos = oreClusterCalculator.generateCluster( input.blocks, oreType, sourcePos);
+            clusters.put(oreType, (clusterPos == null) ? Collections.emptyList() : clusterPos);
+        }
+
+        if(DEBUG) {
+            List<Long> times = THREAD_TIMES.get("handleChunkClusterPreGeneration");
+            synchronized (times) { times.add((System.nanoTime() - start) / 1_000_000); }
+        }
+        return clusters;
+    }
+
+    /**
+     * @return true if oreType is regenerated from its stored layout rather than generated again
+     */
+    private static boolean isLayoutRegen(ManagedOreClusterChunk chunk, OreClusterId oreType, boolean onlyRegenerateOres) {
+        return onlyRegenerateOres && chunk.getClusterLayout(oreType) != null;
+    }
+
+    /**
+     * Commit half of pregeneration, adds the computed cluster positions to the chunk's
+     * blockStateUpdates and advances its status. Runs on the server thread, where regenerating
+     * clusters with a stored layout are diffed against the live chunk
+     * @param chunk
+     * @param onlyRegenerateOres
+     * @param clusters result of computeChunkClusterPreGeneration
+     */
+    private void commitChunkClusterPreGeneration(ManagedOreClusterChunk chunk, boolean onlyRegenerateOres,
+        Map<OreClusterId, List<Pair<BlockState, BlockPos>>> clusters)
+    {
+        if( clusters == null )
             return;
 
-        if( chunk.getId().equals(TEST_ID) ) {
+        if( chunk.getKey() == TEST_KEY ) {
              int i = 0;
         }
 
+        //Layout diffs read live block states, one pass per touched section
+        if( onlyRegenerateOres )
+        {
+            LevelChunk levelChunk = chunk.getChunk(false);
+            if( levelChunk == null ) {
+                chunksPendingPreGeneration.add(chunk.getKey());
+                return;
+            }
+            for( Map.Entry<OreClusterId, BlockPos> cluster : chunk.getClusterTypes().entrySet() )
+            {
+                OreClusterId oreType = cluster.getKey();
+                if( cluster.getValue() == null || !isLayoutRegen(chunk, oreType, true) ) continue;
+                if( !this.config.getOreConfigModel(oreType).oreClusterDoesRegenerate ) continue;
+                List<Pair<BlockState, BlockPos>> missing = chunk.getClusterLayout(oreType).missing(level, levelChunk);
+                if( !missing.isEmpty() ) clusters.put(oreType, missing);
+            }
+        }
+
         //LoggerProject.logDebug("002015","Generating clusters for chunk: " + chunk.getId());
-        boolean onlyRegenerateOres = this.chunksPendingRegeneration.contains(chunk.getId());
         String SKIPPED = null;
-        for( OreClusterId oreType : chunk.getClusterTypes().keySet() )
+        for( Map.Entry<OreClusterId, List<Pair<BlockState, BlockPos>>> cluster : clusters.entrySet() )
         {
-            //1. If we are regenerating, skip any clusters in this chunk that dont' regenerate
-            if( onlyRegenerateOres ) {
-                OreClusterConfigModel config = this.config.getOreConfigModel(oreType);
-                if(!config.oreClusterDoesRegenerate) continue;
-            }
+            OreClusterId oreType = cluster.getKey();
+            List<Pair<BlockState, BlockPos>> clusterPos = cluster.getValue();
 
             //2. If we don't have a source pos, skip and revert cluster to clean
-            BlockPos sourcePos = chunk.getClusterTypes().get(oreType);
-            if( sourcePos == null ) {
+            if( clusterPos == null ) {
                 LoggerProject.logDebug("002032","No source position for oreType: " + oreType);
                 SKIPPED = BlockUtil.blockToString(oreType.getBlock());
                 chunk.setStatus(OreClusterStatus.DETERMINED);
-                this.chunksPendingCleaning.add(chunk.getId());
+                this.chunksPendingCleaning.add(chunk.getKey());
                 continue;
             }
 
-            List<Pair<BlockState, BlockPos>> clusterPos = oreClusterCalculator.generateCluster( chunk, oreType, sourcePos);
-            if( clusterPos == null || clusterPos.size() == 0 ) {
+            if( clusterPos.size() == 0 ) {
                 SKIPPED = BlockUtil.blockToString(oreType.getBlock());
                 continue;
             }
@@ -1036,8 +1374,14 @@ public class OreClusterManager {
             for( Pair<BlockState, BlockPos> pos : clusterPos ) {
                 chunk.addBlockStateUpdate(pos.getLeft(), pos.getRight().offset(sourceOffset));
             }
+            if( isLayoutRegen(chunk, oreType, onlyRegenerateOres) ) {
+                regenBlocksRewritten += clusterPos.size();
+            } else {
+                chunk.setClusterLayout(oreType, ClusterLayout.of(chunk.getChunkPos(), clusterPos));
+            }
             //add to existingClustersByType
-            existingClustersByType.get(oreType).add(chunk.getId());
+            existingClustersByType.get(oreType).add(chunk.getKey());
+            clusterIndex.put(oreType, chunk.getKey(), chunk.getClusterTypes().get(oreType));
         }
 
         if( SKIPPED == null )
@@ -1047,7 +1391,7 @@ public class OreClusterManager {
             else
                 chunk.setStatus(OreClusterStatus.PREGENERATED);
 
-            chunksPendingGeneration.add(chunk.getId());
+            chunksPendingGeneration.add(chunk.getKey());
         }
 
     }
@@ -1061,16 +1405,10 @@ public class OreClusterManager {
      * updateChunkBlocks
      * updateBlockStates
      */
-     private static Map<String, Integer> manifestUpdates = new ConcurrentHashMap<>();
     private void handleChunkManifestation(ManagedOreClusterChunk chunk)
     {
         //LoggerProject.logDebug("002033","Editing chunk: " + chunk.getId());
-        manifestUpdates.putIfAbsent(chunk.getId(), 0);
-        if( manifestUpdates.get(chunk.getId()) > 50 ) {
-            int i = 0;
-        }
-
-        if( chunk.getId().equals(TEST_ID) ) {
+        if( chunk.getKey() == TEST_KEY ) {
             int i = 0;
         }
 
@@ -1082,41 +1420,35 @@ public class OreClusterManager {
         {
             LevelChunk levelChunk = chunk.getChunk(false);
             if (levelChunk == null) return;
-            BlockState state = chunk.getBlockStateUpdateType().orElse(null);
-            if( state == null ) return;
-            LinkedHashSet<BlockPos> positions = chunk.getBlockStateUpdates(state);
-            isSuccessful = ManagedChunk.updateChunkBlockStates(level, Map.of(state, new ArrayList<>(positions)));
-            if( isSuccessful ) {
-                chunk.removeBlockStateUpdates(state);
-                if( chunk.countUpdatesRemaining() > 0 )
-                    isSuccessful = false;
-            }
+            //All pending states are written section by section in one pass
+            isSuccessful = ChunkSectionWriter.write(level, levelChunk, chunk.getBlockStateUpdates()) >= 0;
         }
 
         if( isSuccessful )
         {
             chunk.setReady(false);
+            if( chunk.hasClusters() ) chunk.placeFootprint();
             chunk.clearBlockStateUpdates();
 
             if( chunk.hasClusters() ) {
                 chunk.setStatus(OreClusterStatus.GENERATED);
-                chunksPendingRegeneration.remove(chunk.getId());
+                chunksPendingRegeneration.remove(chunk.getKey());
+                scheduleRegenDeadline(chunk, true);
             }
             else {
                 chunk.setStatus(OreClusterStatus.COMPLETE);
-                completeChunks.add(chunk.getId());
+                completeChunks.add(chunk.getKey());
                 this.removeManagedChunk(chunk);
             }
         }
     }
 
-    private void initSerializedChunks(List<String> chunkIds)
+    private void initSerializedChunks(LongList chunkIds)
     {
         Long start = System.nanoTime();
-        for( String id : chunkIds)
+        for( long id : chunkIds)
         {
-            ChunkPos pos = HBUtil.ChunkUtil.getChunkPos(id);
-            HBUtil.ChunkUtil.getLevelChunk(level, pos.x, pos.z, false);
+            HBUtil.ChunkUtil.getLevelChunk(level, ChunkKey.x(id), ChunkKey.z(id), false);
             while( !this.determinedChunks.contains(id) )
             {
                 try {
@@ -1139,23 +1471,21 @@ public class OreClusterManager {
      * essentially redetermines all chunks in the same order there were originally
      * @param chunkId
      */
-    private void handleChunkInitialization(String chunkId)
+    private void handleChunkInitialization(long chunkId)
     {
         int batchSize = ModRealTimeConfig.ORE_CLUSTER_DTRM_BATCH_SIZE_TOTAL;
         determinedSourceChunks.add(chunkId);
-        LinkedHashSet<String> chunkIds = getBatchedChunkList(batchSize, chunkId);
+        LongLinkedOpenHashSet chunkIds = getBatchedChunkList(batchSize, chunkId);
 
         //Map<ChunkId, Clusters>
-        Map<String, List<OreClusterId>> clusters;
-        clusters = oreClusterCalculator.calculateClusterLocations(chunkIds.stream().toList() , randSeqClusterPositionGen);
+        Long2ObjectMap<List<OreClusterId>> clusters;
+        clusters = oreClusterCalculator.calculateClusterLocations(new LongArrayList(chunkIds) , randSeqClusterPositionGen);
 
         // #3. Add clusters to determinedClusters
-        for( String id: chunkIds) {
-            this.determinedChunks.add(id);
-        }
+        this.determinedChunks.addAll(chunkIds);
 
         // #4. Add clusters to tentativeClustersByType
-        for( String id : clusters.keySet() ) {
+        for( long id : clusters.keySet() ) {
             List<OreClusterId> clusterTypes = clusters.get(id);
             for( OreClusterId ore : clusterTypes ) {
                 if(removedClustersByType.get(ore).contains(id)) continue;
@@ -1174,16 +1504,17 @@ public class OreClusterManager {
      * @return true if the operation suceeded
      * addCluster
      */
-    public boolean addNewCluster(OreClusterId clusterType, String chunkId, BlockPos pos)
+    public boolean addNewCluster(OreClusterId clusterType, long chunkId, BlockPos pos)
     {
         if(clusterType == null) return false;
         if(this.config.getOreConfigModel(clusterType) == null) return false;
+        ensureChunkRegionLoaded(chunkId);
 
         ManagedOreClusterChunk chunk = this.loadedOreClusterChunks.get(chunkId);
         if( chunk == null )
         {
             this.expiredChunks.remove(chunkId);
-            this.loadedOreClusterChunks.put(chunkId, ManagedOreClusterChunk.getInstance(level, chunkId));
+            this.putLoadedChunk(chunkId, ManagedOreClusterChunk.getInstance(level, chunkId));
         } else {
             if(!isFinished(chunk)) return false;
         }
@@ -1192,6 +1523,7 @@ public class OreClusterManager {
         if( this.addedClustersByType.get(chunkId) == null )
             this.addedClustersByType.put(chunkId, new HashMap<>());
         this.addedClustersByType.get(chunkId).put(clusterType, pos);
+        this.addedClusterChunksByType.get(clusterType).add(chunkId);
         chunk.addClusterTypes(addedClustersByType.get(chunkId));
 
         this.completeChunks.remove(chunkId);
@@ -1204,13 +1536,13 @@ public class OreClusterManager {
      * @param chunkId
      * @return true if the chunk is in loadedOreClusterChunks, false otherwise
      */
-    public boolean forceReloadChunk(String chunkId)
+    public boolean forceReloadChunk(long chunkId)
     {
         ManagedOreClusterChunk chunk = this.loadedOreClusterChunks.get(chunkId);
         if( chunk != null ) return true;
             final int MAX_TRIES = 10; int count = 0;
             while( chunk == null && count < MAX_TRIES ) {
-                ManagedChunk parent = chunkUtil.getManagedChunk(chunkId);
+                ManagedChunk parent = chunkUtil.getManagedChunk(ChunkKey.toId(chunkId));
                 if( parent == null ) return false;
                 LevelChunk l =  parent.getCachedLevelChunk();
                 if( l != null ) this.forceLoadedChunks.put(chunkId, l);
@@ -1221,7 +1553,7 @@ public class OreClusterManager {
         return chunk != null;
     }
 
-    public boolean forceProcessChunk(String chunkId) {
+    public boolean forceProcessChunk(long chunkId) {
         return this.forceProcessChunk(chunkId, OreClusterStatus.NONE);
     }
 
@@ -1233,7 +1565,7 @@ public class OreClusterManager {
      *
      * forceReload
      */
-    public boolean forceProcessChunk(String chunkId, OreClusterStatus fromStatus)
+    public boolean forceProcessChunk(long chunkId, OreClusterStatus fromStatus)
     {
         if(this.completeChunks.contains(chunkId)) return true;
 
@@ -1242,7 +1574,8 @@ public class OreClusterManager {
             ManagedOreClusterChunk chunk = this.loadedOreClusterChunks.get(chunkId);
             if(chunk == null) {
                 if( !forceReloadChunk(chunkId) ) return false;
-                chunk = this.loadedOreClusterChunks.getOrDefault(chunkId, ManagedOreClusterChunk.getInstance(level, chunkId));
+                chunk = this.loadedOreClusterChunks.get(chunkId);
+                if( chunk == null ) chunk = ManagedOreClusterChunk.getInstance(level, chunkId);
                 fromStatus = OreClusterStatus.NONE;
                 chunk.setStatus(OreClusterStatus.NONE);
             } else {
@@ -1250,7 +1583,7 @@ public class OreClusterManager {
             }
 
             this.removeManagedChunk(chunk);
-            this.loadedOreClusterChunks.put(chunkId, chunk);
+            this.putLoadedChunk(chunkId, chunk);
 
             final ManagedOreClusterChunk CHUNK_REF = chunk;
             final OreClusterStatus minStatus = fromStatus;
@@ -1261,10 +1594,9 @@ public class OreClusterManager {
             if( !hasStatus.apply(OreClusterStatus.DETERMINED) )
             {
                 //add cluster from existing clusters by type
-                Map<OreClusterId, BlockPos> clusters = new HashMap<>(32);
-                tentativeClustersByType.entrySet().stream()
-                    .filter(e -> e.getValue().contains(chunkId))
-                    .forEach(e -> clusters.put(e.getKey(), null));
+                Map<OreClusterId, BlockPos> clusters = new HashMap<>();
+                for( OreClusterId id : tentativeTypeIndex.types(chunkId) )
+                    clusters.put(id, null);
 
                 chunk.addClusterTypes(clusters);
                 if( isNoStatus(chunk) ) chunk.setStatus( OreClusterStatus.DETERMINED );
@@ -1273,7 +1605,7 @@ public class OreClusterManager {
             final int MAX_TRIES = 10;   //10 tries to load chunk
             int count = 0;              //here
             while( !hasStatus.apply(OreClusterStatus.CLEANED) ) {
-                editManagedChunk(chunk, this::handleChunkCleaning);
+                editManagedChunk(chunk, null, this::handleChunkCleaning);
                 if( count++ > MAX_TRIES ) return false;
             }
 
@@ -1281,18 +1613,18 @@ public class OreClusterManager {
             if( chunk.hasClusters() )
             {
                 while( !hasStatus.apply(OreClusterStatus.PREGENERATED) ) {
-                    editManagedChunk(chunk, this::handleChunkClusterPreGeneration);
+                    editManagedChunk(chunk, null, this::handleChunkClusterPreGeneration);
                     if (count++ > MAX_TRIES) return false;
                 }
                 this.chunksPendingRegeneration.remove(chunkId);
 
             }
 
-            editManagedChunk(chunk, (c) -> c.setReady(true));
+            editManagedChunk(chunk, Stage.MANIFEST, (c) -> c.setReady(true));
             int i = 0;
 
         } catch (Exception e) {
-            LoggerProject.logError("002017","Error in force loading chunk: " + chunkId +"\n" + e.getMessage());
+            LoggerProject.logError("002017","Error in force loading chunk: " + ChunkKey.toId(chunkId) +"\n" + e.getMessage());
             e.printStackTrace();
             return false;
         }
@@ -1303,32 +1635,163 @@ public class OreClusterManager {
 
     }
 
+    /**
+     * Global regeneration. Starts a new regen epoch, which makes every chunk with regenerable
+     * clusters stale in O(1): unloaded chunks regenerate lazily in handleChunkLoaded, chunks
+     * that are loaded now are released over time by a rolling OreClusterRegenJob
+     */
     void triggerRegen()
     {
         //0. Clear all health check data
         this.clearHealthCheckData();
 
-        //1. Get list of all chunkIds with clusters
-        LinkedHashSet<String> regenableChunks = new LinkedHashSet<>();
-        for( OreClusterId clusterType : existingClustersByType.keySet() )
-        {
-            OreClusterConfigModel model = this.config.getOreConfigModel(clusterType);
-            if( model == null || !model.oreClusterDoesRegenerate ) continue;
-            regenableChunks.addAll(existingClustersByType.get(clusterType));
+        //1. Every chunk last generated in an earlier epoch is now due
+        this.regenEpoch++;
+        this.regenEpochDirty = true;
+
+        //2. Loaded chunks with regenerable clusters won't see a load event, untouched ones are skipped now
+        LongArrayList loadedChunks = new LongArrayList();
+        List<ManagedOreClusterChunk> untouched = new ArrayList<>();
+        synchronized (loadedOreClusterChunks) {
+            for( ManagedOreClusterChunk c : loadedOreClusterChunks.values() ) {
+                if( !isRegenDue(c) ) continue;
+                if( c.isUntouched() ) untouched.add(c);
+                else loadedChunks.add(c.getKey());
+            }
+        }
+        untouched.forEach(this::skipUntouchedRegen);
+
+        //3. Release them over time from runWorkers, a new wave replaces one still running
+        OreClusterRegenJob job = new OreClusterRegenJob(loadedChunks, config.getRegenChunksPerSecond());
+        OreClusterRegenJob previous = this.regenJob;
+        this.regenJob = job;
+        if( previous != null ) previous.cancel();
+        LoggerProject.logInfo("002018", "Started regen epoch " + regenEpoch + " in " + HBUtil.LevelUtil.toLevelId(level)
+            + ", regenerating " + loadedChunks.size() + " loaded cluster chunks at " + config.getRegenChunksPerSecond()
+            + " chunks per second, " + untouched.size() + " untouched skipped");
+    }
+
+    /**
+     * Cancels the running global regeneration wave, chunks already released still regenerate
+     * @return true if a wave was running
+     */
+    boolean cancelRegen()
+    {
+        OreClusterRegenJob job = this.regenJob;
+        if( job == null || job.isFinished() ) return false;
+        job.cancel();
+        return true;
+    }
+
+    private void tickRegenJob()
+    {
+        OreClusterRegenJob job = this.regenJob;
+        if( job == null || job.isFinished() ) return;
+        job.tick(GeneralConfig.getInstance().getTotalTickCount(), playerPriority, this::getDepletion, this::regenIfDue);
+    }
+
+    /**
+     * Regenerates loaded chunks whose regen deadlines passed together, most depleted first
+     * @param chunkIds
+     */
+    void regenIfDue(LongArrayList chunkIds)
+    {
+        if( chunkIds.size() > 1 ) {
+            LongArrays.unstableSort(chunkIds.elements(), 0, chunkIds.size(),
+                (LongComparator) (a, b) -> Double.compare(getDepletion(b), getDepletion(a)));
         }
+        for( long chunkId : chunkIds ) regenIfDue(chunkId);
+    }
 
-        regenableChunks.forEach(c -> this.triggerRegen(c, false));
+    /**
+     * Regenerates a loaded chunk released by the regen job or the regen manager's deadline wheel
+     * unless it is no longer due, chunks unloaded in the meantime are checked when they next load
+     * @param chunkId
+     * @return true if regeneration was triggered
+     */
+    boolean regenIfDue(long chunkId)
+    {
+        ManagedOreClusterChunk chunk = loadedOreClusterChunks.get(chunkId);
+        return chunk != null && regenIfDue(chunk);
     }
 
-    boolean triggerRegen(String chunkId, boolean force)
+    private boolean regenIfDue(ManagedOreClusterChunk chunk)
     {
-        AtomicBoolean hasCluster = new AtomicBoolean(false);
-        existingClustersByType.values().forEach(list -> {
-            if( list.contains(chunkId) ) hasCluster.set(true);
-        });
+        if( !isRegenDue(chunk) ) return false;
+        if( chunk.isUntouched() ) {
+            skipUntouchedRegen(chunk);
+            return false;
+        }
+        return this.triggerRegen(chunk.getKey(), false);
+    }
+
+    /**
+     * A cluster nobody mined is already whole, it counts as regenerated for this epoch and period
+     * without being pregenerated and manifested again
+     * @param chunk
+     */
+    private void skipUntouchedRegen(ManagedOreClusterChunk chunk)
+    {
+        chunk.setRegenEpoch(regenEpoch);
+        scheduleRegenDeadline(chunk, true);
+        regenSkippedUntouched++;
+    }
 
-        if( !hasCluster.get() ) {
-            LoggerProject.logWarning("002015","Chunk " + chunkId + " does not have any clusters to regenerate. Rejected.");
+    /**
+     * @param chunkId
+     * @return depletion of a loaded chunk's clusters, 0 if it is not loaded
+     */
+    private double getDepletion(long chunkId)
+    {
+        ManagedOreClusterChunk chunk = loadedOreClusterChunks.get(chunkId);
+        return (chunk == null) ? 0 : chunk.getDepletion();
+    }
+
+    /**
+     * @param chunk
+     * @return true if the chunk's generated clusters predate the current regen epoch or
+     *  their regen due tick has passed
+     */
+    private boolean isRegenDue(ManagedOreClusterChunk chunk)
+    {
+        if( chunk.getStatus().ordinal() < OreClusterStatus.GENERATED.ordinal() ) return false;
+        boolean epochStale = chunk.getRegenEpoch() < regenEpoch;
+        if( !epochStale ) {
+            OreClusterRegenManager regenManager = OreClusterRegenManager.getInstance();
+            long due = chunk.getRegenDueTick();
+            if( regenManager == null || due == 0 || due > regenManager.currentRegenTick() ) return false;
+        }
+        return hasRegenerableClusters(chunk.getKey());
+    }
+
+    /**
+     * Schedules a loaded chunk's regen due tick on the regen manager's deadline wheel
+     * @param chunk
+     * @param renew true when the chunk's clusters were just generated, starts a new period
+     */
+    private void scheduleRegenDeadline(ManagedOreClusterChunk chunk, boolean renew)
+    {
+        OreClusterRegenManager regenManager = OreClusterRegenManager.getInstance();
+        if( regenManager == null || !hasRegenerableClusters(chunk.getKey()) ) return;
+        if( renew || chunk.getRegenDueTick() == 0 )
+            chunk.setRegenDueTick(regenManager.nextRegenDueTick(chunk.getKey()));
+        regenManager.scheduleRegen(level, chunk.getKey(), chunk.getRegenDueTick());
+    }
+
+    private boolean hasRegenerableClusters(long chunkId)
+    {
+        for( OreClusterId oreType : existingTypeIndex.types(chunkId) ) {
+            OreClusterConfigModel model = this.config.getOreConfigModel(oreType);
+            if( model != null && model.oreClusterDoesRegenerate ) return true;
+        }
+        return false;
+    }
+
+    boolean triggerRegen(long chunkId, boolean force)
+    {
+        ensureChunkRegionLoaded(chunkId);
+        if( !existingTypeIndex.hasAny(chunkId) ) {
+            LoggerProject.logWarning("002015","Chunk " + ChunkKey.toId(chunkId) + " does not have any clusters to regenerate. Rejected.");
             return false;
         }
 
@@ -1336,6 +1799,8 @@ public class OreClusterManager {
         ManagedOreClusterChunk chunk = loadedOreClusterChunks.get(chunkId);
         if( chunk == null ) return false;
 
+        chunk.setRegenEpoch(regenEpoch);
+        chunk.setRegenDueTick(0);       //rescheduled once the chunk is generated again
         final int REGENERATED = OreClusterStatus.REGENERATED.ordinal();
         if(chunk.getStatus().ordinal() < REGENERATED ) {
             chunksPendingRegeneration.remove(chunkId);
@@ -1362,10 +1827,10 @@ public class OreClusterManager {
      * Batch process that determines the location of clusters in the next n chunks
      * Chunk cluster determinations are made spirally from the 'start' chunk, up, right, down, left
      */
-    private LinkedHashSet<String> getBatchedChunkList(int batchSize, String startId)
+    private LongLinkedOpenHashSet getBatchedChunkList(int batchSize, long startId)
     {
-        LinkedHashSet<String> chunkIds = new LinkedHashSet<>();
-        ChunkPos pos = HBUtil.ChunkUtil.getChunkPos(startId);
+        LongLinkedOpenHashSet chunkIds = new LongLinkedOpenHashSet();
+        ChunkPos pos = ChunkKey.toChunkPos(startId);
         ChunkGenerationOrderHandler chunkIdGeneratorHandler = mainSpiral;
         if (mainSpiral.testMainSpiralRangeExceeded()) {
             chunkIdGeneratorHandler = new ChunkGenerationOrderHandler(pos);
@@ -1373,7 +1838,7 @@ public class OreClusterManager {
 
         for (int i = 0; i < batchSize; i++) {
             ChunkPos next = chunkIdGeneratorHandler.getNextSpiralChunk();
-            chunkIds.add(ChunkUtil.getId(next));
+            chunkIds.add(ChunkKey.of(next));
         }
 
         return chunkIds;
@@ -1388,11 +1853,11 @@ public class OreClusterManager {
             return level;
         }
 
-        public ManagedOreClusterChunk getLoadedChunk(String chunkId) {
+        public ManagedOreClusterChunk getLoadedChunk(long chunkId) {
             return loadedOreClusterChunks.get(chunkId);
         }
 
-        public LevelChunk getForceLoadedChunk(String chunkId) {
+        public LevelChunk getForceLoadedChunk(long chunkId) {
             return this.forceLoadedChunks.get(chunkId);
         }
 
@@ -1408,22 +1873,21 @@ public class OreClusterManager {
      * @param spiralArea
      * @return LinkedHashSet of chunkIds that were recently explored
      */
-    public LinkedHashSet<String> getRecentChunkIds(ChunkPos start, int spiralArea)
+    public LongLinkedOpenHashSet getRecentChunkIds(ChunkPos start, int spiralArea)
     {
         if (chunksPendingCleaning.size() < Math.pow(ModRealTimeConfig.ORE_CLUSTER_DTRM_RADIUS_STRATEGY_CHANGE, 2)) {
-            return chunksPendingCleaning.stream().limit(spiralArea).
-            collect(Collectors.toCollection(LinkedHashSet::new));
+            return new LongLinkedOpenHashSet(chunksPendingCleaning.peek(spiralArea));
         }
         else
         {
-            LinkedHashSet<String> chunkIds = new LinkedHashSet<>();
+            LongLinkedOpenHashSet chunkIds = new LongLinkedOpenHashSet();
             ChunkGenerationOrderHandler spiralHandler = new ChunkGenerationOrderHandler(start);
 
             try
             {
                 for (int i = 0; i < spiralArea; i++) {
                     ChunkPos next = spiralHandler.getNextSpiralChunk();
-                    chunkIds.add( ChunkUtil.getId(next) );
+                    chunkIds.add( ChunkKey.of(next) );
                 }
 
             } catch (Exception e) {
@@ -1435,26 +1899,34 @@ public class OreClusterManager {
     }
 
     /**
-     * Edits a ManagedChunk object from determinedChunks with a consumer, ensuring each object is edited atomically
-     * Returns an empty optional if the chunk is locked or null is passed
+     * Edits a ManagedChunk with a consumer while holding the chunk's edit claim, so different chunks may be
+     * edited concurrently but each chunk is only edited by one caller at a time. The claim is a CAS and never blocks;
+     * if another caller holds it the work is deferred by CLAIM_RETRY_TICKS on retryStage instead of being dropped
      * @param chunk
+     * @param retryStage stage to reschedule the chunk on if the claim fails, null if the caller retries itself
      * @param consumer
-     * @return
+     * @return true if the consumer ran
      */
     @ThreadSafe
-    private synchronized Optional<ManagedOreClusterChunk> editManagedChunk(ManagedOreClusterChunk chunk, Consumer<ManagedOreClusterChunk> consumer)
+    private boolean editManagedChunk(ManagedOreClusterChunk chunk, @Nullable Stage retryStage, Consumer<ManagedOreClusterChunk> consumer)
     {
         if (chunk == null)
-            return Optional.empty();
+            return false;
 
-        if( chunk.getLock().isLocked() )
-            return Optional.empty();
+        if( !chunk.tryClaim() ) {
+            claimsContended.incrementAndGet();
+            if( retryStage != null )
+                waitList.defer(chunk.getKey(), retryStage, GeneralConfig.getInstance().getTotalTickCount(), CLAIM_RETRY_TICKS);
+            return false;
+        }
 
-        chunk.getLock().lock();
-        consumer.accept(chunk);
-        chunk.getLock().unlock();
+        try {
+            consumer.accept(chunk);
+        } finally {
+            chunk.release();
+        }
 
-        return Optional.ofNullable(chunk);
+        return true;
     }
 
 
@@ -1464,14 +1936,10 @@ public class OreClusterManager {
         this.save(DatastoreSaveEvent.create());
 
         managerRunning = false;
-
-        /*
-        threadPoolLoadedChunks.shutdownNow();
-        threadPoolClusterDetermination.shutdownNow();
-        threadPoolClusterCleaning.shutdownNow();
-        threadPoolClusterGenerating.shutdownNow();
-        threadPoolChunkEditing.shutdownNow();
-         */
+        pipeline.clear();
+        waitList.clear();
+        expiryWheel.clear();
+        evictions.clear();
 
         if( this.threadLoad != null )
             this.threadLoad.interrupt();
@@ -1480,122 +1948,302 @@ public class OreClusterManager {
 
     }
 
+    /**
+     * Description: Runs on threadLoad. With a region store the manager starts immediately and regions are
+     * streamed in nearest players first, any region a chunk needs earlier is read on demand by
+     * ensureRegionLoaded. Legacy JSON state is migrated before the manager starts.
+     */
     private void load() {
         this.managerRunning = false;
         this.initializing = true;
-        DataStore ds = GeneralConfig.getInstance().getDataStore();
-        LevelSaveData levelData = ds.getOrCreateLevelSaveData(Constants.MOD_ID, level);
+        this.regionStore = OreClusterRegionStore.forLevel(level);
+        loadRegenEpoch();
 
-        if( levelData.get("determinedSourceChunks") == null ) {
+        if( regionStore != null && regionStore.exists() )
+        {
+            unloadedRegions.addAll(regionStore.listRegions());
             this.initializing = false;
             this.managerRunning = true;
+            streamRegions();
             return;
         }
 
+        loadLegacyLevelData();
+        //Remove all ids from tentativeClustersByType using removedClusters
+        for( OreClusterId oreType : removedClustersByType.keySet() ) {
+            tentativeClustersByType.get(oreType).removeAll(removedClustersByType.get(oreType));
+        }
+
+        this.initializing = false;
+        this.managerRunning = true;
+    }
+
+    /**
+     * Every chunk set persisted by the region store, keyed by OreClusterRegionStore.sectionKey
+     */
+    private Long2ObjectMap<ChunkKeySet> persistedSets()
+    {
+        Long2ObjectMap<ChunkKeySet> sets = new Long2ObjectOpenHashMap<>();
+        sets.put(OreClusterRegionStore.sectionKey(OreClusterRegionStore.SET_DETERMINED_SOURCE, 0), determinedSourceChunks);
+        sets.put(OreClusterRegionStore.sectionKey(OreClusterRegionStore.SET_PENDING_REGEN, 0), chunksPendingRegeneration);
+        removedClustersByType.forEach((id, set) ->
+            sets.put(OreClusterRegionStore.sectionKey(OreClusterRegionStore.SET_REMOVED_CLUSTERS, id.getId()), set));
+        addedClusterChunksByType.forEach((id, set) ->
+            sets.put(OreClusterRegionStore.sectionKey(OreClusterRegionStore.SET_ADDED_CLUSTERS, id.getId()), set));
+        return sets;
+    }
+
+    /**
+     * Description: Reads unloaded regions in batches, each batch the REGION_LOAD_BATCH regions nearest to a player
+     */
+    private void streamRegions()
+    {
+        while( managerRunning && !Thread.currentThread().isInterrupted() )
+        {
+            LongArrayList batch;
+            synchronized (unloadedRegions) { batch = new LongArrayList(unloadedRegions); }
+            if( batch.isEmpty() ) return;
+
+            Long2DoubleOpenHashMap distances = new Long2DoubleOpenHashMap(batch.size());
+            for( long region : batch ) distances.put(region, playerPriority.distanceSqr(regionCenter(region)));
+            batch.unstableSort((LongComparator) (a, b) -> Double.compare(distances.get(a), distances.get(b)));
+
+            for( int i = 0; i < Math.min(REGION_LOAD_BATCH, batch.size()); i++ ) {
+                if( ensureRegionLoaded(batch.getLong(i)) ) regionsStreamed++;
+            }
+        }
+    }
+
+    private static long regionCenter(long region) {
+        int half = ChunkKeySet.REGION_SIZE / 2;
+        return ChunkKey.of(ChunkKey.x(region) * ChunkKeySet.REGION_SIZE + half, ChunkKey.z(region) * ChunkKeySet.REGION_SIZE + half);
+    }
+
+    /**
+     * Reads the region holding chunkId if it has not been read yet, call before consulting persisted state for a chunk
+     * @param chunkId
+     */
+    private void ensureChunkRegionLoaded(long chunkId)
+    {
+        if( unloadedRegions.isEmpty() ) return;
+        if( ensureRegionLoaded(ChunkKeySet.regionOf(chunkId)) ) regionsLoadedOnDemand++;
+    }
+
+    /**
+     * Reads region under its own lock, so the server thread never waits on streamRegions reading
+     * a different region
+     * @param region
+     * @return true if this call read the region
+     */
+    private boolean ensureRegionLoaded(long region)
+    {
+        if( !unloadedRegions.contains(region) ) return false;
+        Object lock = regionLoadLocks.computeIfAbsent(region, k -> new Object());
+        try {
+            synchronized (lock)
+            {
+                if( !unloadedRegions.contains(region) ) return false;
+                try {
+                    loadRegion(region);
+                } catch (Exception e) {
+                    LoggerProject.logError("002034", "Error loading ore cluster region " + ChunkKey.toId(region) + ": " + e.getMessage());
+                }
+                //Removed after reading, a thread that finds the region absent sees its data
+                unloadedRegions.remove(region);
+                return true;
+            }
+        } finally {
+            regionLoadLocks.remove(region, lock);
+        }
+    }
+
+    /**
+     * Description: Merges one region file into the persisted sets and the cluster sets derived from them
+     */
+    private void loadRegion(long region)
+    {
+        Long2ObjectMap<long[]> sections = regionStore.read(region);
+        if( sections == null ) return;
+
+        synchronized (regionMergeLock) {
+            mergeRegion(region, sections);
+        }
+    }
+
+    private void mergeRegion(long region, Long2ObjectMap<long[]> sections)
+    {
+        Long2ObjectMap<ChunkKeySet> sets = persistedSets();
+        for( Long2ObjectMap.Entry<long[]> e : sections.long2ObjectEntrySet() )
+        {
+            long key = e.getLongKey();
+            ChunkKeySet set = sets.get(key);
+            if( set == null ) continue;     //ore cluster no longer configured
+            set.mergeRegionBits(region, e.getValue());
+
+            byte kind = OreClusterRegionStore.sectionKind(key);
+            if( kind != OreClusterRegionStore.SET_ADDED_CLUSTERS && kind != OreClusterRegionStore.SET_REMOVED_CLUSTERS )
+                continue;
+            OreClusterId oreClusterId = this.config.getOreConfigId(OreClusterRegionStore.sectionOreClusterId(key));
+            if( oreClusterId == null ) continue;
+
+            ChunkKeySet loaded = new ChunkKeySet();
+            loaded.setRegionBits(region, e.getValue());
+            if( kind == OreClusterRegionStore.SET_REMOVED_CLUSTERS ) {
+                tentativeClustersByType.get(oreClusterId).removeAll(loaded);
+                continue;
+            }
+
+            //Added clusters are tentative and existing clusters
+            tentativeClustersByType.get(oreClusterId).addAll(loaded);
+            existingClustersByType.get(oreClusterId).addAll(loaded);
+            loaded.forEachInRegion(region, id -> {
+                synchronized (addedClustersByType) {
+                    if( addedClustersByType.get(id) == null )
+                        addedClustersByType.put(id, new HashMap<>());
+                    addedClustersByType.get(id).put(oreClusterId, null);
+                }
+            });
+        }
+    }
+
+    private void loadRegenEpoch()
+    {
+        DataStore ds = GeneralConfig.getInstance().getDataStore();
+        if( ds == null ) return;
+        JsonElement epoch = ds.getOrCreateLevelSaveData(Constants.MOD_ID, level).get(REGEN_EPOCH_KEY);
+        if( epoch != null && epoch.isJsonPrimitive() )
+            this.regenEpoch = epoch.getAsInt();
+    }
+
+    /**
+     * Description: Migrates state saved as JSON in LevelSaveData by earlier versions. The sets are left dirty
+     * so the next save writes them to the region store, after which the JSON properties are cleared
+     */
+    private void loadLegacyLevelData()
+    {
+        DataStore ds = GeneralConfig.getInstance().getDataStore();
+        if( ds == null ) return;
+        LevelSaveData levelData = ds.getOrCreateLevelSaveData(Constants.MOD_ID, level);
+
         //1. Extract "removedClusters" from levelData
         JsonElement removedClusters = levelData.get("removedClusters");
-        if( removedClusters == null || removedClusters.isJsonNull() ) {
-            //skip
-        } else {
+        if( removedClusters != null && removedClusters.isJsonObject() ) {
             JsonObject json = removedClusters.getAsJsonObject();
             for( String oreType : json.keySet() ) {
                 OreClusterId id = this.config.getOreConfigId(Integer.parseInt(oreType));
                 if(id == null) continue;
                 JsonArray ids = json.get(oreType).getAsJsonArray();
-                removedClustersByType.get(id).addAll(ids.asList().stream().map(JsonElement::getAsString).toList());
+                removedClustersByType.get(id).addAll(toChunkKeys(ids));
             }
+            legacyLevelDataLoaded = true;
         }
 
-
         //2. get AddedClusters
         JsonElement addedClusters = levelData.get("addedClusters");
-        if( addedClusters == null || addedClusters.isJsonNull() ) {
-            //skip
-        } else {
+        if( addedClusters != null && addedClusters.isJsonObject() ) {
             JsonObject json = addedClusters.getAsJsonObject();
             for( String oreType : json.keySet() ) {
                 OreClusterId oreClusterId = this.config.getOreConfigId(Integer.parseInt(oreType));
                 if(oreClusterId == null) continue;
-                JsonArray chunkIds = json.get(oreType).getAsJsonArray();
-                tentativeClustersByType.get(oreClusterId).addAll(chunkIds.asList().stream().map(JsonElement::getAsString).toList());
-                existingClustersByType.get(oreClusterId).addAll(chunkIds.asList().stream().map(JsonElement::getAsString).toList());
-                List<String> listIds = chunkIds.asList().stream().map(JsonElement::getAsString).toList();
-                for( String id : listIds ) {
+                LongList listIds = toChunkKeys(json.get(oreType).getAsJsonArray());
+                tentativeClustersByType.get(oreClusterId).addAll(listIds);
+                existingClustersByType.get(oreClusterId).addAll(listIds);
+                addedClusterChunksByType.get(oreClusterId).addAll(listIds);
+                for( long id : listIds ) {
                     addedClustersByType.put(id, new HashMap<>());
                     addedClustersByType.get(id).put(oreClusterId, null);
                 }
             }
+            legacyLevelDataLoaded = true;
         }
 
         //3. Get chunksPendingRegeneration
         JsonElement regenChunks = levelData.get("chunksPendingRegen");
-        if( regenChunks == null || regenChunks.isJsonNull() ) {
-            //skip
-        } else {
-            JsonArray ids = regenChunks.getAsJsonArray();
-            chunksPendingRegeneration.addAll(ids.asList().stream().map(JsonElement::getAsString).toList());
+        if( regenChunks != null && regenChunks.isJsonArray() ) {
+            chunksPendingRegeneration.addAll(toChunkKeys(regenChunks.getAsJsonArray()));
+            legacyLevelDataLoaded = true;
         }
 
         //4. Extract "determinedSourceChunks" from levelData
-        JsonArray ids = levelData.get("determinedSourceChunks").getAsJsonArray();
-        List<String> chunkIds = ids.asList().stream().map(JsonElement::getAsString).toList();
-        //this.initSerializedChunks(chunkIds);
-
-         //5. Remove all ids from tentativeClustersByType using removedClusters
-        for( OreClusterId oreType : removedClustersByType.keySet() ) {
-            for( String id : removedClustersByType.get(oreType) ) {
-                tentativeClustersByType.get(oreType).remove(id);
-            }
+        JsonElement sourceChunks = levelData.get("determinedSourceChunks");
+        if( sourceChunks != null && sourceChunks.isJsonArray() ) {
+            determinedSourceChunks.addAll(toChunkKeys(sourceChunks.getAsJsonArray()));
+            legacyLevelDataLoaded = true;
         }
-
-        this.managerRunning = true;
     }
 
 
     /**
-     * Description: Saves the determinedSourceChunks to levelSavedata
+     * Description: Writes every region changed since the last save to the region store, and the
+     * regen epoch to LevelSaveData when a global regen started a new one
       */
     private void save(DataStore ds)
     {
-        //Create new Mod Datastore, if one does not exist for this mod,
-        //read determinedSourceChunks into an array and save it to levelSavedata
-        if (ds == null) return;
-        //if(true) return;
-
-        LevelSaveData levelData = ds.getOrCreateLevelSaveData(Constants.MOD_ID, level);
+        if( regionStore == null || initializing ) return;
 
+        if( regenEpochDirty && ds != null ) {
+            regenEpochDirty = false;
+            ds.getOrCreateLevelSaveData(Constants.MOD_ID, level).addProperty(REGEN_EPOCH_KEY, new JsonPrimitive(regenEpoch));
+        }
 
-        String[] ids = determinedSourceChunks.toArray(new String[0]);
-        //levelData.addProperty("determinedSourceChunks", HBUtil.FileIO.arrayToJson(ids));
-
-        Function<BlockState, String> toName = (bs) -> HBUtil.BlockUtil.blockToString(bs.getBlock());
-        Function<Set<String>, JsonElement> toArray = (list) -> HBUtil.FileIO.arrayToJson(list.toArray(new String[0]));
-
-        JsonObject removedClusters = new JsonObject();
-        for( OreClusterId clusterId : removedClustersByType.keySet()) {
-            removedClusters.add(clusterId.getStringId(), toArray.apply(removedClustersByType.get(clusterId)));
+        long start = System.nanoTime();
+        Long2ObjectMap<ChunkKeySet> sets = persistedSets();
+        LongSet dirtyRegions = new LongOpenHashSet();
+        for( ChunkKeySet set : sets.values() ) dirtyRegions.addAll(set.drainDirtyRegions());
+        if( dirtyRegions.isEmpty() && !legacyLevelDataLoaded ) {
+            saveStatistics.recordSkipped();
+            return;
         }
-        //levelData.addProperty("removedClusters", removedClusters);
 
-        //save addedClusters
-        JsonObject addedClusters = new JsonObject();
-        Map<OreClusterId, Set<String>> addedClustersByOreClusterId = new HashMap<>();
-        //Fill Map with BlockState from oreConfig mapped to empty sets
-        for( OreClusterId ore : config.getOreConfigs().keySet() ) {
-            Set<String> clusterIds = addedClustersByType.entrySet().stream()
-                .filter(e -> e.getValue().containsKey(ore))
-                .map(Map.Entry::getKey).collect(Collectors.toSet());
-            addedClustersByOreClusterId.put(ore, clusterIds);
+        boolean failed = false;
+        long bytes = 0;
+        for( long region : dirtyRegions )
+        {
+            //A region changed before it was streamed in must be read first or the write would drop its stored chunks
+            ensureRegionLoaded(region);
+            Long2ObjectMap<long[]> sections = new Long2ObjectOpenHashMap<>();
+            for( Long2ObjectMap.Entry<ChunkKeySet> e : sets.long2ObjectEntrySet() )
+                sections.put(e.getLongKey(), e.getValue().getRegionBits(region));
+
+            long written = regionStore.write(region, sections);
+            if( written < 0 ) {
+                failed = true;
+                for( ChunkKeySet set : sets.values() ) set.markRegionDirty(region);
+            } else {
+                bytes += written;
+            }
         }
-        for( OreClusterId ore : addedClustersByOreClusterId.keySet()) {
-            addedClusters.add( ore.getStringId(), toArray.apply(addedClustersByOreClusterId.get(ore)));
+
+        if( legacyLevelDataLoaded && !failed && ds != null ) {
+            LevelSaveData levelData = ds.getOrCreateLevelSaveData(Constants.MOD_ID, level);
+            for( String key : LEGACY_LEVEL_DATA_KEYS ) {
+                if( levelData.get(key) != null ) levelData.addProperty(key, JsonNull.INSTANCE);
+            }
+            legacyLevelDataLoaded = false;
         }
-        //levelData.addProperty("addedClusters", addedClusters);
 
-        //save chunksPendingRegen
-        String[] regenIds = chunksPendingRegeneration.toArray(new String[0]);
-        levelData.addProperty("chunksPendingRegen", HBUtil.FileIO.arrayToJson(regenIds));
+        saveStatistics.record(System.nanoTime() - start, bytes, dirtyRegions.size());
+    }
+
+    private static LongList toChunkKeys(JsonArray ids)
+    {
+        LongList keys = new LongArrayList(ids.size());
+        for( JsonElement id : ids ) {
+            keys.add(ChunkKey.fromId(id.getAsString()));
+        }
+        return keys;
+    }
 
+    static String[] toChunkIds(LongCollection keys)
+    {
+        synchronized (keys) {
+            String[] ids = new String[keys.size()];
+            int i = 0;
+            for( LongIterator it = keys.iterator(); it.hasNext(); ) {
+                ids[i++] = ChunkKey.toId(it.nextLong());
+            }
+            return ids;
+        }
     }
 
     //* STATIC METHODS
@@ -1608,7 +2256,7 @@ public class OreClusterManager {
 
         OreClusterManager manager = OreClustersAndRegenMain.getManagers().get( level );
         if( manager != null ) {
-            manager.onLoadedChunkId( HBUtil.ChunkUtil.getId(event.getChunk())  );
+            manager.onLoadedChunkId( ChunkKey.of(event.getChunk())  );
         }
     }
     //END onChunkLoad
@@ -1641,51 +2289,117 @@ public class OreClusterManager {
         return manager.getManagedOreClusterChunk(chunk);
     }
 
+    /**
+     * Called by MixinLevel after every successful Level.setBlock, records harvest progress on the
+     * changed chunk's ClusterFootprint in O(1)
+     * @param level
+     * @param pos
+     * @param state new block state
+     */
+    public static void onBlockChanged(Level level, BlockPos pos, BlockState state)
+    {
+        if( MANAGERS == null || level.isClientSide() ) return;
+        OreClusterManager m = MANAGERS.get(level);
+        if( m == null ) return;
+        ManagedOreClusterChunk chunk = m.loadedOreClusterChunks.get(ChunkKey.of(pos));
+        if( chunk != null && chunk.onBlockChanged(pos, state) ) m.blocksHarvested++;
+    }
+
     public static OreClusterManager getManager(LevelAccessor level) {
         return OreClustersAndRegenMain.getManagers().get(level);
     }
 
-    public Set<String> getDeterminedChunks() {
+    public LongSet getDeterminedChunks() {
         return this.determinedChunks;
     }
 
     public ManagedOreClusterChunk getManagedOreClusterChunk(ChunkAccess chunk) {
-        return this.getManagedOreClusterChunk(ChunkUtil.getId(chunk));
+        return this.getManagedOreClusterChunk(ChunkKey.of(chunk));
     }
 
-    public ManagedOreClusterChunk getManagedOreClusterChunk(String chunkId) {
-        this.loadedOreClusterChunks.putIfAbsent(chunkId, ManagedOreClusterChunk.getInstance(level, chunkId));
-        return this.loadedOreClusterChunks.get(chunkId);
+    public ManagedOreClusterChunk getManagedOreClusterChunk(long chunkId) {
+        synchronized (loadedOreClusterChunks) {
+            ManagedOreClusterChunk chunk = this.loadedOreClusterChunks.get(chunkId);
+            if( chunk != null ) return chunk;
+            chunk = ManagedOreClusterChunk.getInstance(level, chunkId);
+            this.putLoadedChunk(chunkId, chunk);
+            return chunk;
+        }
     }
 
 
     //* EVENTS
 
 
+    private static int managerRotation = 0;
     private static void onSingletick(ServerTickEvent event)
     {
         //run all workers here directly, don't run them as a thread
-        for(OreClusterManager m : MANAGERS.values()) {
-            if (m.managerRunning) {
-                if (WORKER_THREAD_ENABLED.get("workerThreadLoadedChunk")) {
-                    m.workerThreadLoadedChunk();
-                }
-                if (WORKER_THREAD_ENABLED.get("workerThreadDetermineClusters")) {
-                    m.workerThreadDetermineClusters();
-                }
-                if (WORKER_THREAD_ENABLED.get("workerThreadCleanClusters")) {
-                    m.workerThreadCleanClusters();
-                }
-                if (WORKER_THREAD_ENABLED.get("workerThreadGenerateClusters")) {
-                    m.workerThreadGenerateClusters();
-                }
-                if (WORKER_THREAD_ENABLED.get("workerThreadEditChunk")) {
-                    m.workerThreadManifestChunkEdits();
-                }
-            }
+        List<OreClusterManager> running = MANAGERS.values().stream()
+            .filter(m -> m.managerRunning).toList();
+        if(running.isEmpty()) return;
+
+        //Split the tick budget between dimensions by weight, time unused by one dimension rolls over to the next.
+        //The first manager rotates each tick so no dimension is always last to receive leftover time
+        long remainingNanos = running.get(0).config.getTickBudgetMicros() * 1000L;
+        int remainingWeight = 0;
+        for(OreClusterManager m : running) remainingWeight += m.updateWeight();
+
+        int n = running.size();
+        int first = Math.floorMod(managerRotation++, n);
+        for(int i = 0; i < n; i++) {
+            OreClusterManager m = running.get((first + i) % n);
+            long share = (remainingNanos * m.weight) / Math.max(1, remainingWeight);
+            remainingWeight -= m.weight;
+            remainingNanos -= m.runWorkers(share);
         }
     }
 
+    /**
+     * Dimensions with players are weighted above idle dimensions for both the server thread budget
+     * and the shared OreClusterWorkerPool
+     * @return this manager's weight
+     */
+    private int updateWeight()
+    {
+        int next = 1 + Math.min(MAX_PLAYER_WEIGHT, playerPriority.playerCount());
+        if(next != weight) pipeline.setWeight(next);
+        this.weight = next;
+        return next;
+    }
+
+    /**
+     * Runs each worker stage on the server thread within budgetNanos, stages stop
+     * early once their share of the budget is spent and resume next tick
+     * @param budgetNanos
+     * @return nanoseconds used
+     */
+    private long runWorkers(long budgetNanos)
+    {
+        tickBudget.beginTick(budgetNanos);
+        playerPriority.update(level);
+        for(Stage stage : Stage.values()) {
+            getStageQueue(stage).reprioritize(REPRIORITIZE_PER_TICK);
+        }
+        waitList.tick(GeneralConfig.getInstance().getTotalTickCount(), this::requeue);
+        evictSavedChunks();
+        tickRegenJob();
+        runStage(Stage.HANDLE, this::workerThreadLoadedChunk);
+        runStage(Stage.DETERMINE, this::workerThreadDetermineClusters);
+        runStage(Stage.CLEAN, this::workerThreadCleanClusters);
+        runStage(Stage.PREGENERATE, this::workerThreadGenerateClusters);
+        runStage(Stage.MANIFEST, this::workerThreadManifestChunkEdits);
+        return tickBudget.endTick();
+    }
+
+    private void runStage(Stage stage, Runnable worker)
+    {
+        if (!WORKER_THREAD_ENABLED.get(stage.workerName)) return;
+        tickBudget.beginStage(stage);
+        worker.run();
+        tickBudget.endStage();
+    }
+
     private static void save(DatastoreSaveEvent event) {
         for( OreClusterManager m : MANAGERS.values() ) {
             m.save(event.getDataStore());
@@ -0,0 +1,166 @@
+package com.holybuckets.orecluster.core;
+
+import com.google.gson.JsonObject;
+import com.holybuckets.orecluster.LoggerProject;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSets;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Class: OreClusterPipeline
+ * Description: Staged pipeline engine for one OreClusterManager: handle -> determine -> clean -> pregenerate -> manifest.
+ *  Each Stage declares whether it must run on the server thread. Stages that only compute, such as
+ *  OreClusterCalculator.generateCluster, run their compute step on the OreClusterWorkerPool shared by all managers and
+ *  hand the result back through a completion queue. The commit step, which mutates the chunk or world,
+ *  is drained on the server thread within the manager's OreClusterTickBudget.
+ *
+ *  #Methods
+ *  - submit: run compute on the stage's executor and queue commit for the server thread
+ *  - drainCompletions: run queued commits on the server thread until the budget is spent
+ *  - isInFlight, inFlight: chunks with compute work outstanding
+ *  - setWeight: share of the shared worker pool given to this dimension
+ */
+public class OreClusterPipeline {
+
+    public static final String CLASS_ID = "018";
+
+    /**
+     * Pipeline stages in the order they run each tick.
+     * weight is the relative share of the tick budget, requiresMainThread is true for stages that
+     * touch Foundation ManagedChunk lookups or write blocks and may not leave the server thread,
+     * queueHighWatermark is the stage queue size above which new chunks wait in the queue's backlog
+     */
+    public enum Stage {
+        HANDLE("workerThreadLoadedChunk", 1, true, 8192),
+        DETERMINE("workerThreadDetermineClusters", 2, true, 4096),
+        CLEAN("workerThreadCleanClusters", 2, true, 4096),
+        //compute only reads a PreGenerationInput snapshot taken on the server thread at submit
+        PREGENERATE("workerThreadGenerateClusters", 3, false, 2048),
+        MANIFEST("workerThreadEditChunk", 2, true, 2048);
+
+        public final String workerName;
+        public final int weight;
+        public final boolean requiresMainThread;
+        public final int queueHighWatermark;
+
+        Stage(String workerName, int weight, boolean requiresMainThread, int queueHighWatermark) {
+            this.workerName = workerName;
+            this.weight = weight;
+            this.requiresMainThread = requiresMainThread;
+            this.queueHighWatermark = queueHighWatermark;
+        }
+    }
+
+    /** Maximum compute tasks outstanding per manager, further chunks wait in their stage queue **/
+    static final int MAX_IN_FLIGHT = OreClusterWorkerPool.MAX_QUEUED_PER_DIMENSION;
+
+    private final String dimension;
+    private final LongSet inFlight;
+    private final ConcurrentLinkedQueue<Runnable> completions;
+
+    /**
+     * @param dimension name of the manager's level, selects its queue in the shared OreClusterWorkerPool
+     */
+    public OreClusterPipeline(String dimension) {
+        this.dimension = dimension;
+        this.inFlight = LongSets.synchronize(new LongOpenHashSet());
+        this.completions = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Relative share of the shared worker pool for this pipeline's dimension
+     * @param weight
+     */
+    public void setWeight(int weight) {
+        OreClusterWorkerPool.getInstance().setWeight(dimension, weight);
+    }
+
+    /**
+     * Runs compute for chunkId on the stage's executor then queues commit to run on the server thread.
+     * Main thread stages compute and commit immediately.
+     * @param stage
+     * @param chunkId
+     * @param compute pure computation, must not write to the world
+     * @param commit applies the result, always runs on the server thread
+     * @return false if chunkId already has work in flight or the manager is at MAX_IN_FLIGHT
+     */
+    public <T> boolean submit(Stage stage, long chunkId, Supplier<T> compute, Consumer<T> commit)
+    {
+        if(stage.requiresMainThread) {
+            commit.accept(compute.get());
+            return true;
+        }
+
+        if(inFlight.size() >= MAX_IN_FLIGHT) return false;
+        if(!inFlight.add(chunkId)) return false;
+
+        boolean queued = OreClusterWorkerPool.getInstance().submit(dimension, () -> {
+            T result = null;
+            try {
+                result = compute.get();
+            } catch (Exception e) {
+                LoggerProject.logError("018001", "Error in pipeline stage " + stage + ": " + e.getMessage());
+            }
+            final T r = result;
+            completions.add(() -> {
+                inFlight.remove(chunkId);
+                commit.accept(r);
+            });
+        });
+        if(!queued) {
+            inFlight.remove(chunkId);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Runs completed commits on the server thread, stops when the budget is spent
+     * @param budget
+     */
+    public void drainCompletions(OreClusterTickBudget budget)
+    {
+        int drained = 0;
+        Runnable commit;
+        while((drained == 0 || budget.hasTime()) && (commit = completions.poll()) != null)
+        {
+            drained++;
+            try {
+                commit.run();
+            } catch (Exception e) {
+                LoggerProject.logError("018002", "Error committing pipeline result: " + e.getMessage());
+            }
+        }
+    }
+
+    public boolean isInFlight(long chunkId) {
+        return inFlight.contains(chunkId);
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    public JsonObject workerStatistics() {
+        return OreClusterWorkerPool.getInstance().toJson(dimension);
+    }
+
+    public int pendingCompletions() {
+        return completions.size();
+    }
+
+    /**
+     * Drops outstanding results, workers that finish later only append to the dropped queue
+     */
+    public void clear() {
+        OreClusterWorkerPool.getInstance().removeDimension(dimension);
+        completions.clear();
+        inFlight.clear();
+    }
+
+}
@@ -0,0 +1,144 @@
+package com.holybuckets.orecluster.core;
+
+import com.google.gson.JsonObject;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongComparator;
+import it.unimi.dsi.fastutil.longs.LongPredicate;
+
+import java.util.function.LongToDoubleFunction;
+
+/**
+ * Class: OreClusterRegenJob
+ * Description: One rolling global regeneration wave over a level's loaded cluster chunks, chunks
+ *  that are not loaded catch up through the regen epoch when they load. Instead of queueing every
+ *  chunk at once, the job releases them at a configured rate of chunks per second, most depleted
+ *  first and nearest to a player within the same DEPLETION_BUCKETS bucket. Remaining chunks are
+ *  re-sorted whenever PlayerChunkPriority reports that players moved, at most once every RESORT_TICKS.
+ *
+ *  tick() runs on the server thread from OreClusterManager.runWorkers; progress, cancel and
+ *  setRate may be called from any thread.
+ *
+ *  #Methods
+ *  - tick: release this tick's share of chunks to the regen callback
+ *  - cancel, setRate: control a running job
+ *  - isFinished, toJson: progress, ETA and status
+ */
+public class OreClusterRegenJob {
+
+    private static final int TICKS_PER_SECOND = 20;
+    private static final int RESORT_TICKS = 100;
+    private static final int DEPLETION_BUCKETS = 4;
+
+    public enum Status { RUNNING, COMPLETE, CANCELLED }
+
+    private final long[] order;
+    private int next;
+    private int triggered;
+    private int skipped;
+
+    private volatile int chunksPerSecond;
+    private volatile boolean cancelled;
+    private double credit;
+
+    private final long startMillis;
+    private long finishMillis;
+    private int lastPriorityVersion = -1;
+    private long lastResortTick;
+
+    /**
+     * @param chunks cluster chunks to regenerate
+     * @param chunksPerSecond release rate
+     */
+    public OreClusterRegenJob(LongCollection chunks, int chunksPerSecond)
+    {
+        this.order = new LongArrayList(chunks).toLongArray();
+        this.chunksPerSecond = Math.max(1, chunksPerSecond);
+        this.startMillis = System.currentTimeMillis();
+        if(order.length == 0) this.finishMillis = startMillis;
+    }
+
+    /**
+     * Releases up to one tick's share of chunks, most depleted and nearest to players first
+     * @param currentTick
+     * @param priority player positions of the job's level
+     * @param depletion fraction of a chunk's cluster blocks harvested, 0 to 1
+     * @param regen triggers regeneration of one chunk, returns false if the chunk was rejected
+     */
+    public synchronized void tick(long currentTick, PlayerChunkPriority priority, LongToDoubleFunction depletion, LongPredicate regen)
+    {
+        if(isFinished()) return;
+
+        int rate = chunksPerSecond;
+        credit = Math.min(credit + (double) rate / TICKS_PER_SECOND, Math.max(1, rate));
+        if(credit < 1) return;
+
+        boolean firstSort = (lastPriorityVersion == -1);
+        if(priority.version() != lastPriorityVersion && (firstSort || currentTick - lastResortTick >= RESORT_TICKS)) {
+            lastPriorityVersion = priority.version();
+            lastResortTick = currentTick;
+            LongArrays.unstableSort(order, next, order.length, (LongComparator) (a, b) -> {
+                int byDepletion = Integer.compare(depletionBucket(depletion.applyAsDouble(b)), depletionBucket(depletion.applyAsDouble(a)));
+                if(byDepletion != 0) return byDepletion;
+                return Double.compare(priority.distanceSqr(a), priority.distanceSqr(b));
+            });
+        }
+
+        while(credit >= 1 && next < order.length && !cancelled) {
+            if(regen.test(order[next++])) triggered++;
+            else skipped++;
+            credit--;
+        }
+
+        if(next == order.length) finishMillis = System.currentTimeMillis();
+    }
+
+    private static int depletionBucket(double depletion) {
+        return (int) Math.min(DEPLETION_BUCKETS - 1, Math.max(0, depletion) * DEPLETION_BUCKETS);
+    }
+
+    public void cancel()
+    {
+        if(isFinished()) return;
+        this.cancelled = true;
+        synchronized (this) {
+            if(finishMillis == 0) finishMillis = System.currentTimeMillis();
+        }
+    }
+
+    public void setRate(int chunksPerSecond) {
+        this.chunksPerSecond = Math.max(1, chunksPerSecond);
+    }
+
+    public synchronized boolean isFinished() {
+        return cancelled || next >= order.length;
+    }
+
+    public synchronized Status getStatus()
+    {
+        if(cancelled) return Status.CANCELLED;
+        return (next >= order.length) ? Status.COMPLETE : Status.RUNNING;
+    }
+
+    public synchronized JsonObject toJson()
+    {
+        int total = order.length;
+        int remaining = cancelled ? 0 : total - next;
+        long end = (finishMillis != 0) ? finishMillis : System.currentTimeMillis();
+
+        JsonObject json = new JsonObject();
+        json.addProperty("status", getStatus().name());
+        json.addProperty("total", total);
+        json.addProperty("processed", next);
+        json.addProperty("triggered", triggered);
+        json.addProperty("skipped", skipped);
+        json.addProperty("remaining", remaining);
+        json.addProperty("percent", (total == 0) ? 100.0 : Math.round(1000.0 * next / total) / 10.0);
+        json.addProperty("chunksPerSecond", chunksPerSecond);
+        json.addProperty("etaSeconds", (double) remaining / chunksPerSecond);
+        json.addProperty("elapsedSeconds", (end - startMillis) / 1000.0);
+        return json;
+    }
+
+}
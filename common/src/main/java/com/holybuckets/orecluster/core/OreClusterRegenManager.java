@@ -9,25 +9,46 @@ import com.holybuckets.foundation.datastore.WorldSaveData;
 import com.holybuckets.foundation.event.EventRegistrar;
 import com.holybuckets.foundation.event.custom.DatastoreSaveEvent;
 import com.holybuckets.foundation.event.custom.ServerTickEvent;
+import com.holybuckets.foundation.event.custom.TickType;
 import com.holybuckets.foundation.exception.InvalidId;
 import com.holybuckets.orecluster.Constants;
 import com.holybuckets.orecluster.LoggerProject;
 import com.holybuckets.orecluster.ModRealTimeConfig;
 import com.holybuckets.orecluster.OreClustersAndRegenMain;
+import com.holybuckets.orecluster.core.model.ChunkKey;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import net.blay09.mods.balm.api.event.EventPriority;
 import net.blay09.mods.balm.api.event.LevelLoadingEvent;
 import net.minecraft.world.level.LevelAccessor;
 
 import javax.annotation.Nullable;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import static com.holybuckets.foundation.GeneralConfig.OVERWORLD;
 
 
+/**
+ * Class: OreClusterRegenManager
+ * Description: Owns the regeneration period and schedules cluster regeneration. Every generated
+ *  cluster chunk carries its own regen due tick, one period after it was generated plus a
+ *  deterministic per chunk jitter of up to JITTER_FRACTION of the period. Loaded chunks wait on a
+ *  TickTimingWheel per level that is advanced every tick, so regeneration is spread evenly in
+ *  small batches instead of landing on the period boundary. Unloaded chunks are checked against
+ *  their due tick when they load.
+ *
+ *  #Methods
+ *  - nextRegenDueTick, scheduleRegen, cancelScheduledRegen: per chunk deadlines
+ *  - triggerRegen: manual global or single chunk regeneration
+ */
 public class OreClusterRegenManager {
 
+    private static OreClusterRegenManager INSTANCE;
+    /** Largest offset of a chunk's due tick from one period after generation, as a fraction of the period **/
+    private static final double JITTER_FRACTION = 0.25;
+
     Long periodTickStart;
     Long periodTickEnd;
     Long periodTickLength;
@@ -40,6 +61,10 @@ public class OreClusterRegenManager {
     ModRealTimeConfig config;
 
     private static boolean isLoaded = false;
+    private boolean dirty = true;
+    private final OreClusterSaveStatistics saveStatistics = new OreClusterSaveStatistics();
+    /** Regen deadlines of loaded cluster chunks per level, in ticks with sleep **/
+    private final Map<LevelAccessor, TickTimingWheel> regenWheels = new ConcurrentHashMap<>();
 
     public OreClusterRegenManager(EventRegistrar reg, ModRealTimeConfig config, Map<LevelAccessor, OreClusterManager> managers)
     {
@@ -49,6 +74,14 @@ public class OreClusterRegenManager {
         this.config = config;
         this.generalConfig = GeneralConfig.getInstance();
         this.init(reg);
+        INSTANCE = this;
+    }
+
+    /**
+     * @return the regen manager, null before the mod is initialized
+     */
+    public static OreClusterRegenManager getInstance() {
+        return INSTANCE;
     }
 
 
@@ -59,6 +92,7 @@ public class OreClusterRegenManager {
         reg.registerOnDataSave(this::save, EventPriority.High);
 
         reg.registerOnDailyTick(GeneralConfig.OVERWORLD_LOC, this::onDailyTick);
+        reg.registerOnServerTick(TickType.ON_SINGLE_TICK, this::onServerTick);
         LoggerProject.logInit("015000", this.getClass().getName());
 
     }
@@ -77,6 +111,7 @@ public class OreClusterRegenManager {
         int regenPeriodInDays = periodLengthByItem.get(item);
         this.periodTickLength = (long) regenPeriodInDays*TICKS_PER_DAY;
         this.periodCurrentStage = item;
+        this.dirty = true;
         updatePeriod(periodTickLength);
     }
 
@@ -94,19 +129,89 @@ public class OreClusterRegenManager {
         this.periodTickLength = length;
         this.periodTickStart = start;
         this.periodTickEnd = start + length;
+        this.dirty = true;
     }
 
 
     private void handleDailyTick(ServerTickEvent.DailyTickEvent event)
     {
+        //Chunks regenerate on their own due ticks, the period only rolls over
         long currentTicks = event.getTickCountWithSleeps();
         if( currentTicks >= periodTickEnd )
-        {
-            this.triggerRegenThreadExecutor.submit(this::triggerGlobalRegen);
             updatePeriod(currentTicks, periodTickLength);
+    }
+
+    /**
+     * Fires the regen deadlines that passed since the last tick, each level's manager
+     * regenerates the chunks that are still loaded and due, most depleted first
+     */
+    private void handleServerTick()
+    {
+        if( regenWheels.isEmpty() ) return;
+        long currentTicks = currentRegenTick();
+        for( Map.Entry<LevelAccessor, TickTimingWheel> e : regenWheels.entrySet() ) {
+            OreClusterManager manager = managers.get(e.getKey());
+            if( manager == null ) continue;
+            LongArrayList due = new LongArrayList();
+            e.getValue().advance(currentTicks, due::add);
+            if( !due.isEmpty() ) manager.regenIfDue(due);
         }
     }
 
+    //* REGEN DEADLINES
+
+    /**
+     * @return the clock regen periods and chunk due ticks are measured in
+     */
+    public long currentRegenTick() {
+        return generalConfig.getTotalTickCountWithSleep(OVERWORLD);
+    }
+
+    /**
+     * @param chunkId
+     * @return tick one period from now, offset by the chunk's jitter
+     */
+    public long nextRegenDueTick(long chunkId)
+    {
+        long length = (periodTickLength == null) ? TICKS_PER_DAY : periodTickLength;
+        long seed = (ModRealTimeConfig.CLUSTER_SEED == null) ? 0 : ModRealTimeConfig.CLUSTER_SEED;
+        //splitmix64 finalizer, a chunk keeps the same offset every period
+        long h = chunkId ^ seed;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        h = h ^ (h >>> 31);
+        double unit = (h >>> 11) * 0x1.0p-53;       //[0, 1)
+        long jitter = (long) ((2 * unit - 1) * JITTER_FRACTION * length);
+        return currentRegenTick() + length + jitter;
+    }
+
+    /**
+     * Schedules a loaded chunk to be checked for regeneration at dueTick
+     * @param level
+     * @param chunkId
+     * @param dueTick
+     */
+    public void scheduleRegen(LevelAccessor level, long chunkId, long dueTick) {
+        regenWheels.computeIfAbsent(level, l -> new TickTimingWheel(currentRegenTick())).schedule(chunkId, dueTick);
+    }
+
+    /**
+     * Drops a chunk's deadline once it leaves memory, it is checked again when it loads
+     * @param level
+     * @param chunkId
+     */
+    public void cancelScheduledRegen(LevelAccessor level, long chunkId)
+    {
+        TickTimingWheel wheel = regenWheels.get(level);
+        if( wheel != null ) wheel.cancel(chunkId);
+    }
+
+    public int getScheduledRegenCount(LevelAccessor level)
+    {
+        TickTimingWheel wheel = regenWheels.get(level);
+        return (wheel == null) ? 0 : wheel.size();
+    }
+
     //* API
     public int getDaysUntilNewPeriod() {
         long currentTicks = generalConfig.getTotalTickCountWithSleep(OVERWORLD);
@@ -154,7 +259,7 @@ public class OreClusterRegenManager {
     private void triggerChunkRegen(LevelAccessor level, String chunkId) throws InvalidId {
         OreClusterManager manager = managers.get(level);
         if(manager == null) throw new InvalidId("Could not find manager for level" + HBUtil.LevelUtil.toLevelId(level));
-        manager.triggerRegen(chunkId, true);
+        manager.triggerRegen(ChunkKey.fromId(chunkId), true);
     }
 
 
@@ -185,11 +290,14 @@ public class OreClusterRegenManager {
         if(!object.has("periodCurrentStage") || object.get("periodCurrentStage").isJsonNull()) return false;
         periodCurrentStage = object.get("periodCurrentStage").getAsString();
 
+        long savedTickLength = periodTickLength;
         Map<String, Integer> periods = config.getDefaultConfigModel().oreClusterRegenPeriods;
         if(periods.containsKey(periodCurrentStage)) {       //reflects current configs if changed
             periodTickLength = (long) (periods.get(periodCurrentStage) * TICKS_PER_DAY);
             updatePeriod(periodTickStart, periodTickLength);
+            dirty = periodTickLength != savedTickLength;
         } else {
+            dirty = false;
             LoggerProject.logError("015003", "Invalid periodCurrentStage: " + periodCurrentStage
                 + ". Using saved period length of " + periodTickLength);
         }
@@ -202,7 +310,12 @@ public class OreClusterRegenManager {
         //read determinedSourceChunks into an array and save it to levelSavedata
         DataStore ds = event.getDataStore();
         if (ds == null) return;
+        if (!dirty) {
+            saveStatistics.recordSkipped();
+            return;
+        }
 
+        long start = System.nanoTime();
         JsonObject wrapper = new JsonObject();
         wrapper.addProperty("periodTickStart", periodTickStart);
         wrapper.addProperty("periodTickEnd", periodTickEnd);
@@ -212,6 +325,12 @@ public class OreClusterRegenManager {
 
         WorldSaveData worldSaveData = ds.getOrCreateWorldSaveData(Constants.MOD_ID);
         worldSaveData.addProperty("oreClusterRegenManager", wrapper);
+        dirty = false;
+        saveStatistics.record(System.nanoTime() - start, wrapper.toString().length(), 1);
+    }
+
+    public OreClusterSaveStatistics getSaveStatistics() {
+        return saveStatistics;
     }
 
     public void shutdown() {
@@ -244,6 +363,7 @@ public class OreClusterRegenManager {
 
     public void onLevelUnload(LevelLoadingEvent.Unload event) {
         if(event.getLevel().isClientSide()) return;
+        regenWheels.remove(event.getLevel());
         isLoaded = false;
     }
 
@@ -252,5 +372,9 @@ public class OreClusterRegenManager {
         this.handleDailyTick(event);
     }
 
+    public void onServerTick(ServerTickEvent event) {
+        this.handleServerTick();
+    }
+
 
 }
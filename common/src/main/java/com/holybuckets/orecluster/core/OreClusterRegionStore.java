@@ -0,0 +1,230 @@
+package com.holybuckets.orecluster.core;
+
+import com.holybuckets.orecluster.Constants;
+import com.holybuckets.orecluster.LoggerProject;
+import com.holybuckets.orecluster.core.model.ChunkKey;
+import com.holybuckets.orecluster.core.model.ChunkKeySet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.dimension.DimensionType;
+import net.minecraft.world.level.storage.LevelResource;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Class: OreClusterRegionStore
+ * Description: Binary store for OreClusterManager state, sharded into one file per 32x32 chunk region
+ *  (the ChunkKeySet region) under <dimension>/data/hbs_ore_cluster_and_regen/. Each file holds the
+ *  region's slice of every persisted chunk set as a bitmap, so saving costs O(changed regions) and
+ *  loading costs O(regions ever touched), independent of how many chunks a set holds.
+ *
+ *  File layout, big endian:
+ *  - int MAGIC, short FORMAT_VERSION, int regionX, int regionZ, int sectionCount
+ *  - per section: byte kind, int oreClusterId (0 if unused), short nonzero word mask, one long per set mask bit
+ *
+ *  Files are written to a temporary file and moved into place. A region with no chunks has its file deleted.
+ *
+ *  #Methods
+ *  - forLevel: store for a server level's dimension folder
+ *  - listRegions, read, write: region file access
+ */
+public class OreClusterRegionStore {
+
+    public static final String CLASS_ID = "020";
+
+    private static final int MAGIC = 0x48424F43;       //"HBOC"
+    public static final short FORMAT_VERSION = 1;
+    private static final String PREFIX = "r.";
+    private static final String SUFFIX = ".hboc";
+
+    /** Persisted chunk set kinds **/
+    public static final byte SET_DETERMINED_SOURCE = 1;
+    public static final byte SET_REMOVED_CLUSTERS = 2;
+    public static final byte SET_ADDED_CLUSTERS = 3;
+    public static final byte SET_PENDING_REGEN = 4;
+
+    private final Path directory;
+
+    OreClusterRegionStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param level
+     * @return store in the level's dimension data folder, null for client levels
+     */
+    public static @Nullable OreClusterRegionStore forLevel(Level level)
+    {
+        if(!(level instanceof ServerLevel)) return null;
+        ServerLevel serverLevel = (ServerLevel) level;
+        Path root = serverLevel.getServer().getWorldPath(LevelResource.ROOT);
+        Path dir = DimensionType.getStorageFolder(serverLevel.dimension(), root)
+            .resolve("data").resolve(Constants.MOD_ID);
+        return new OreClusterRegionStore(dir);
+    }
+
+    /**
+     * Key of one section in a region, a set kind and optionally the OreClusterId it belongs to
+     */
+    public static long sectionKey(byte kind, int oreClusterId) {
+        return ((long) kind << 32) | (oreClusterId & 0xFFFFFFFFL);
+    }
+
+    public static byte sectionKind(long sectionKey) {
+        return (byte) (sectionKey >>> 32);
+    }
+
+    public static int sectionOreClusterId(long sectionKey) {
+        return (int) sectionKey;
+    }
+
+    private Path regionFile(long regionKey) {
+        return directory.resolve(PREFIX + ChunkKey.x(regionKey) + "." + ChunkKey.z(regionKey) + SUFFIX);
+    }
+
+    /**
+     * @return true if the store holds at least one region
+     */
+    public boolean exists() {
+        return !listRegions().isEmpty();
+    }
+
+    /**
+     * @return keys of every region with a file in the store
+     */
+    public LongSet listRegions()
+    {
+        LongSet regions = new LongOpenHashSet();
+        if(!Files.isDirectory(directory)) return regions;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for(Path file : files) {
+                String name = file.getFileName().toString();
+                String[] coords = name.substring(PREFIX.length(), name.length() - SUFFIX.length()).split("\\.");
+                if(coords.length != 2) continue;
+                try {
+                    regions.add(ChunkKey.of(Integer.parseInt(coords[0]), Integer.parseInt(coords[1])));
+                } catch (NumberFormatException ignored) {}
+            }
+        } catch (IOException e) {
+            LoggerProject.logError("020001", "Error listing ore cluster regions in " + directory + ": " + e.getMessage());
+        }
+        return regions;
+    }
+
+    /**
+     * @param regionKey
+     * @return sections of the region keyed by sectionKey, each a ChunkKeySet.BITMAP_WORDS bitmap,
+     *  null if the region has no file or could not be read
+     */
+    public @Nullable Long2ObjectMap<long[]> read(long regionKey)
+    {
+        Path file = regionFile(regionKey);
+        if(!Files.isRegularFile(file)) return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if(in.readInt() != MAGIC) {
+                LoggerProject.logWarning("020002", "Skipping ore cluster region with bad header: " + file);
+                return null;
+            }
+            short version = in.readShort();
+            if(version > FORMAT_VERSION) {
+                LoggerProject.logWarning("020003", "Skipping ore cluster region " + file + " written by newer format version " + version);
+                return null;
+            }
+            in.readInt();  //region x, z: redundant with the file name
+            in.readInt();
+
+            int count = in.readInt();
+            Long2ObjectMap<long[]> sections = new Long2ObjectOpenHashMap<>(count);
+            for(int i = 0; i < count; i++) {
+                byte kind = in.readByte();
+                int oreClusterId = in.readInt();
+                int mask = in.readShort() & 0xFFFF;
+                long[] bits = new long[ChunkKeySet.BITMAP_WORDS];
+                for(int w = 0; w < ChunkKeySet.BITMAP_WORDS; w++)
+                    if((mask & (1 << w)) != 0) bits[w] = in.readLong();
+                sections.put(sectionKey(kind, oreClusterId), bits);
+            }
+            return sections;
+        }
+        catch (IOException e) {
+            LoggerProject.logError("020004", "Error reading ore cluster region " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the region's file, deletes it if sections are all empty
+     * @param regionKey
+     * @param sections keyed by sectionKey
+     * @return bytes written, -1 on error
+     */
+    public long write(long regionKey, Long2ObjectMap<long[]> sections)
+    {
+        Path file = regionFile(regionKey);
+        Long2ObjectMap<long[]> nonEmpty = new Long2ObjectOpenHashMap<>();
+        for(Long2ObjectMap.Entry<long[]> e : sections.long2ObjectEntrySet())
+            if(wordMask(e.getValue()) != 0) nonEmpty.put(e.getLongKey(), e.getValue());
+
+        try {
+            if(nonEmpty.isEmpty()) {
+                Files.deleteIfExists(file);
+                return 0;
+            }
+
+            Files.createDirectories(directory);
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeShort(FORMAT_VERSION);
+                out.writeInt(ChunkKey.x(regionKey));
+                out.writeInt(ChunkKey.z(regionKey));
+                out.writeInt(nonEmpty.size());
+                for(Long2ObjectMap.Entry<long[]> e : nonEmpty.long2ObjectEntrySet()) {
+                    long[] bits = e.getValue();
+                    int mask = wordMask(bits);
+                    out.writeByte(sectionKind(e.getLongKey()));
+                    out.writeInt(sectionOreClusterId(e.getLongKey()));
+                    out.writeShort(mask);
+                    for(int w = 0; w < ChunkKeySet.BITMAP_WORDS; w++)
+                        if((mask & (1 << w)) != 0) out.writeLong(bits[w]);
+                }
+            }
+
+            long bytes = Files.size(tmp);
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return bytes;
+        }
+        catch (IOException e) {
+            LoggerProject.logError("020005", "Error writing ore cluster region " + file + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private static int wordMask(long[] bits)
+    {
+        int mask = 0;
+        for(int w = 0; w < bits.length; w++)
+            if(bits[w] != 0) mask |= 1 << w;
+        return mask;
+    }
+
+}
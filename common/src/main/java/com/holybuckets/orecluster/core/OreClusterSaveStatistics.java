@@ -0,0 +1,60 @@
+package com.holybuckets.orecluster.core;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Class: OreClusterSaveStatistics
+ * Description: Duration and size of the incremental saves of one persisted structure, reported by
+ *  healthCheckStatistics. A save that finds nothing dirty is counted as skipped.
+ *
+ *  #Methods
+ *  - record: a save that wrote data
+ *  - recordSkipped: a save with nothing to write
+ *  - toJson: last and total statistics
+ */
+public class OreClusterSaveStatistics {
+
+    private long saves;
+    private long skipped;
+    private long totalNanos;
+    private long totalBytes;
+    private long totalUnits;
+    private long lastNanos;
+    private long lastBytes;
+    private long lastUnits;
+
+    /**
+     * @param nanos duration of the save
+     * @param bytes bytes serialized
+     * @param units regions or records written
+     */
+    public synchronized void record(long nanos, long bytes, long units)
+    {
+        saves++;
+        lastNanos = nanos;
+        lastBytes = bytes;
+        lastUnits = units;
+        totalNanos += nanos;
+        totalBytes += bytes;
+        totalUnits += units;
+    }
+
+    public synchronized void recordSkipped() {
+        skipped++;
+    }
+
+    public synchronized JsonObject toJson()
+    {
+        JsonObject json = new JsonObject();
+        json.addProperty("saves", saves);
+        json.addProperty("savesSkipped", skipped);
+        json.addProperty("lastSaveMillis", lastNanos / 1_000_000.0);
+        json.addProperty("lastSaveBytes", lastBytes);
+        json.addProperty("lastSaveWritten", lastUnits);
+        json.addProperty("totalSaveMillis", totalNanos / 1_000_000);
+        json.addProperty("totalSaveBytes", totalBytes);
+        json.addProperty("totalWritten", totalUnits);
+        return json;
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.holybuckets.orecluster.core;
+
+import com.google.gson.JsonObject;
+
+import java.util.Arrays;
+
+import static com.holybuckets.orecluster.core.OreClusterPipeline.Stage;
+
+/**
+ * Class: OreClusterTickBudget
+ * Description: Time slice given to one OreClusterManager for the worker chain run in onSingletick.
+ *  The global per tick budget (see ModRealTimeConfig#getTickBudgetMicros) is split between running
+ *  managers by OreClusterManager, this class then splits the manager's share between the OreClusterPipeline stages.
+ *
+ *  Each stage receives a weighted share of whatever budget is left when it begins, so time unused by an
+ *  idle stage rolls forward to the stages after it. Worker loops check hasTime() between chunks and stop
+ *  mid stage once the deadline passes; remaining chunks stay queued and resume next tick.
+ *
+ *  #Methods
+ *  - beginTick, endTick: bracket one tick of work for the owning manager
+ *  - beginStage, endStage: bracket one worker stage, sets the stage deadline
+ *  - hasTime: true while the current stage deadline has not passed
+ *  - countProcessed: record a chunk that completed the current stage, for throughput statistics
+ *  - toJson: budget usage and throughput statistics for healthCheckStatistics
+ */
+public class OreClusterTickBudget {
+
+    private static final Stage[] STAGES = Stage.values();
+    /** Throughput is reported per window of this many manager ticks, one minute at 20 tps **/
+    private static final int THROUGHPUT_WINDOW_TICKS = 1200;
+    private static final int[] REMAINING_WEIGHT = new int[STAGES.length];
+    static {
+        int sum = 0;
+        for(int i = STAGES.length - 1; i >= 0; i--) {
+            sum += STAGES[i].weight;
+            REMAINING_WEIGHT[i] = sum;
+        }
+    }
+
+    //Current tick
+    private long tickStart;
+    private long tickDeadline;
+    private long stageStart;
+    private long stageDeadline;
+    private Stage stage;
+    private boolean stageExhausted;
+    private boolean exhausted;
+
+    //Statistics
+    private long lastBudgetNanos;
+    private long lastUsedNanos;
+    private long totalUsedNanos;
+    private long ticks;
+    private long exhaustedTicks;
+    private final long[] lastStageNanos = new long[STAGES.length];
+    private final long[] totalStageNanos = new long[STAGES.length];
+    private final long[] stageExhaustedCount = new long[STAGES.length];
+    private final long[] totalProcessed = new long[STAGES.length];
+    private final long[] windowProcessed = new long[STAGES.length];
+    private final long[] lastWindowProcessed = new long[STAGES.length];
+
+    /**
+     * Start a tick of work with budgetNanos available to this manager
+     * @param budgetNanos
+     */
+    public void beginTick(long budgetNanos)
+    {
+        this.tickStart = System.nanoTime();
+        this.tickDeadline = tickStart + Math.max(0, budgetNanos);
+        this.lastBudgetNanos = budgetNanos;
+        this.exhausted = false;
+        this.stage = null;
+        for(int i = 0; i < STAGES.length; i++) lastStageNanos[i] = 0;
+    }
+
+    /**
+     * Sets the deadline for stage as its weighted share of the budget remaining in this tick
+     * @param stage
+     */
+    public void beginStage(Stage stage)
+    {
+        this.stage = stage;
+        this.stageExhausted = false;
+        this.stageStart = System.nanoTime();
+        long remaining = Math.max(0, tickDeadline - stageStart);
+        int i = stage.ordinal();
+        this.stageDeadline = stageStart + (remaining * stage.weight) / REMAINING_WEIGHT[i];
+    }
+
+    /**
+     * @return true if the current stage may process another chunk
+     */
+    public boolean hasTime()
+    {
+        if(System.nanoTime() < stageDeadline) return true;
+        if(stage != null && !stageExhausted) {
+            stageExhausted = true;
+            exhausted = true;
+            stageExhaustedCount[stage.ordinal()]++;
+        }
+        return false;
+    }
+
+    /**
+     * Counts one chunk through the current stage
+     */
+    public void countProcessed()
+    {
+        if(stage == null) return;
+        totalProcessed[stage.ordinal()]++;
+        windowProcessed[stage.ordinal()]++;
+    }
+
+    public void endStage()
+    {
+        if(stage == null) return;
+        long used = System.nanoTime() - stageStart;
+        lastStageNanos[stage.ordinal()] += used;
+        totalStageNanos[stage.ordinal()] += used;
+        stage = null;
+    }
+
+    /**
+     * @return nanoseconds used by this manager during the tick
+     */
+    public long endTick()
+    {
+        endStage();
+        long used = System.nanoTime() - tickStart;
+        this.lastUsedNanos = used;
+        this.totalUsedNanos += used;
+        this.ticks++;
+        if(exhausted) this.exhaustedTicks++;
+        if(ticks % THROUGHPUT_WINDOW_TICKS == 0) {
+            System.arraycopy(windowProcessed, 0, lastWindowProcessed, 0, STAGES.length);
+            Arrays.fill(windowProcessed, 0);
+        }
+        return used;
+    }
+
+    public JsonObject toJson()
+    {
+        JsonObject json = new JsonObject();
+        json.addProperty("lastBudgetMicros", lastBudgetNanos / 1000);
+        json.addProperty("lastUsedMicros", lastUsedNanos / 1000);
+        json.addProperty("averageUsedMicros", (ticks == 0) ? 0 : (totalUsedNanos / ticks) / 1000);
+        json.addProperty("ticks", ticks);
+        json.addProperty("budgetExhaustedTicks", exhaustedTicks);
+
+        JsonObject stages = new JsonObject();
+        for(Stage s : STAGES) {
+            JsonObject stageJson = new JsonObject();
+            int i = s.ordinal();
+            stageJson.addProperty("lastUsedMicros", lastStageNanos[i] / 1000);
+            stageJson.addProperty("averageUsedMicros", (ticks == 0) ? 0 : (totalStageNanos[i] / ticks) / 1000);
+            stageJson.addProperty("budgetExhausted", stageExhaustedCount[i]);
+            stageJson.addProperty("processedTotal", totalProcessed[i]);
+            stageJson.addProperty("processedLastMinute", lastWindowProcessed[i]);
+            stages.add(s.name(), stageJson);
+        }
+        json.add("stages", stages);
+
+        return json;
+    }
+
+}
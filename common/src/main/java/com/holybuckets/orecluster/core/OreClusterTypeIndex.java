@@ -0,0 +1,195 @@
+package com.holybuckets.orecluster.core;
+
+import com.holybuckets.orecluster.config.model.OreClusterConfigModel.OreClusterId;
+import com.holybuckets.orecluster.core.model.ChunkKeySet;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class: OreClusterTypeIndex
+ * Description: Reverse index from chunk to the OreClusterIds whose per type set holds it, kept as a
+ *  bitmask per chunk. Each OreClusterId is given a bit when its set is created with newSet(); the
+ *  returned TypeSet is a ChunkKeySet that updates the index on every add and remove, so the per type
+ *  sets and the index cannot drift apart.
+ *
+ *  Answers "which cluster types does this chunk have" with one hash lookup per 64 types instead of
+ *  probing every per type set.
+ *
+ *  #Methods
+ *  - newSet: per type set of chunks that maintains this index
+ *  - hasAny, contains, types: lookups by chunk
+ */
+public class OreClusterTypeIndex {
+
+    public static final String CLASS_ID = "022";
+
+    private final Map<OreClusterId, Integer> bits = new HashMap<>();
+    private OreClusterId[] types = new OreClusterId[0];
+    //words[w] maps chunkId -> mask of the types with bit 64w .. 64w+63
+    private Long2LongOpenHashMap[] words = new Long2LongOpenHashMap[0];
+
+    /**
+     * @param oreType
+     * @return new empty set for oreType that keeps this index up to date
+     */
+    public synchronized TypeSet newSet(OreClusterId oreType)
+    {
+        Integer bit = bits.get(oreType);
+        if(bit == null) {
+            bit = types.length;
+            bits.put(oreType, bit);
+            types = Arrays.copyOf(types, bit + 1);
+            types[bit] = oreType;
+            if((bit >>> 6) >= words.length) {
+                words = Arrays.copyOf(words, (bit >>> 6) + 1);
+                words[bit >>> 6] = new Long2LongOpenHashMap();
+            }
+        }
+        return new TypeSet(bit);
+    }
+
+    private synchronized void set(long chunkId, int bit)
+    {
+        Long2LongOpenHashMap word = words[bit >>> 6];
+        word.put(chunkId, word.get(chunkId) | (1L << bit));
+    }
+
+    private synchronized void unset(long chunkId, int bit)
+    {
+        Long2LongOpenHashMap word = words[bit >>> 6];
+        long mask = word.get(chunkId) & ~(1L << bit);
+        if(mask == 0) word.remove(chunkId);
+        else word.put(chunkId, mask);
+    }
+
+    /**
+     * @param chunkId
+     * @return true if any per type set holds chunkId
+     */
+    public synchronized boolean hasAny(long chunkId)
+    {
+        for(Long2LongOpenHashMap word : words)
+            if(word.get(chunkId) != 0) return true;
+        return false;
+    }
+
+    public synchronized boolean contains(long chunkId, OreClusterId oreType)
+    {
+        Integer bit = bits.get(oreType);
+        if(bit == null) return false;
+        return (words[bit >>> 6].get(chunkId) & (1L << bit)) != 0;
+    }
+
+    /**
+     * @param chunkId
+     * @return OreClusterIds whose set holds chunkId
+     */
+    public synchronized List<OreClusterId> types(long chunkId)
+    {
+        List<OreClusterId> result = new ArrayList<>(2);
+        for(int w = 0; w < words.length; w++) {
+            long mask = words[w].get(chunkId);
+            while(mask != 0) {
+                result.add(types[(w << 6) + Long.numberOfTrailingZeros(mask)]);
+                mask &= mask - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Per type ChunkKeySet that mirrors every change into the index. Bulk operations apply
+     * key by key so each change reaches the index
+     */
+    public class TypeSet extends ChunkKeySet
+    {
+        private final int bit;
+
+        private TypeSet(int bit) {
+            this.bit = bit;
+        }
+
+        @Override
+        public synchronized boolean add(long chunkKey)
+        {
+            if(!super.add(chunkKey)) return false;
+            set(chunkKey, bit);
+            return true;
+        }
+
+        @Override
+        public synchronized boolean remove(long chunkKey)
+        {
+            if(!super.remove(chunkKey)) return false;
+            unset(chunkKey, bit);
+            return true;
+        }
+
+        @Override
+        public boolean addAll(LongCollection c)
+        {
+            boolean changed = false;
+            for(long key : snapshot(c)) changed |= add(key);
+            return changed;
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends Long> c)
+        {
+            boolean changed = false;
+            for(Long key : c) changed |= add(key.longValue());
+            return changed;
+        }
+
+        @Override
+        public boolean removeAll(LongCollection c)
+        {
+            boolean changed = false;
+            for(long key : snapshot(c)) changed |= remove(key);
+            return changed;
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> c)
+        {
+            if(c instanceof LongCollection) return removeAll((LongCollection) c);
+            boolean changed = false;
+            for(Object key : c) if(key instanceof Long) changed |= remove(((Long) key).longValue());
+            return changed;
+        }
+
+        @Override
+        public synchronized void clear()
+        {
+            for(long key : toLongArray()) unset(key, bit);
+            super.clear();
+        }
+
+        @Override
+        public synchronized void setRegionBits(long regionKey, long[] regionBits)
+        {
+            forEachInRegion(regionKey, key -> unset(key, bit));
+            super.setRegionBits(regionKey, regionBits);
+            forEachInRegion(regionKey, key -> set(key, bit));
+        }
+
+        @Override
+        public synchronized void mergeRegionBits(long regionKey, long[] regionBits)
+        {
+            super.mergeRegionBits(regionKey, regionBits);
+            forEachInRegion(regionKey, key -> set(key, bit));
+        }
+
+        private long[] snapshot(LongCollection c) {
+            synchronized (c) { return c.toLongArray(); }
+        }
+    }
+
+}
@@ -0,0 +1,231 @@
+package com.holybuckets.orecluster.core;
+
+import com.google.gson.JsonObject;
+import com.holybuckets.orecluster.LoggerProject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class: OreClusterWorkerPool
+ * Description: Bounded worker pool shared by the OreClusterPipeline of every dimension.
+ *  Each dimension submits into its own bounded queue and workers choose the next queue by weighted
+ *  deficit round robin: a queue earns QUANTUM_NANOS * weight of credit each time it reaches the head
+ *  of the rotation and is charged the measured run time of each task. A dimension with a deep backlog
+ *  or expensive tasks therefore cannot starve the others, and dimensions with players may be weighted
+ *  above idle ones with setWeight.
+ *
+ *  #Methods
+ *  - submit: queue a task for a dimension, false if that dimension's queue is full
+ *  - setWeight: relative share of worker time for a dimension
+ *  - removeDimension: drop a dimension's queued tasks, used when its manager shuts down
+ *  - shutdown: stop all workers when the server stops
+ *  - toJson: throughput statistics of one dimension for healthCheckStatistics
+ */
+public class OreClusterWorkerPool {
+
+    public static final String CLASS_ID = "019";
+
+    static final int WORKER_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    /** Maximum queued plus running tasks per dimension **/
+    static final int MAX_QUEUED_PER_DIMENSION = WORKER_COUNT * 2;
+    private static final long QUANTUM_NANOS = 2_000_000L;
+    /** Debt a dimension may carry from one long task, in quanta **/
+    private static final int MAX_DEBT_QUANTA = 4;
+
+    private static final AtomicInteger WORKER_THREAD_COUNT = new AtomicInteger();
+    private static OreClusterWorkerPool INSTANCE;
+
+    private final Map<String, DimensionQueue> dimensions = new HashMap<>();
+    private final ArrayDeque<DimensionQueue> active = new ArrayDeque<>();
+    private final List<Thread> workers = new ArrayList<>(WORKER_COUNT);
+    private volatile boolean running = true;
+
+    private static class DimensionQueue
+    {
+        final String name;
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        int weight = 1;
+        long deficit;
+        boolean isActive;
+        int running;
+
+        //Statistics
+        long submitted;
+        long completed;
+        long rejected;
+        long busyNanos;
+
+        DimensionQueue(String name) {
+            this.name = name;
+        }
+
+        int outstanding() {
+            return tasks.size() + running;
+        }
+    }
+
+    private OreClusterWorkerPool()
+    {
+        for(int i = 0; i < WORKER_COUNT; i++) {
+            Thread t = new Thread(this::workerLoop);
+            t.setName("HBOreClusterWorker-" + WORKER_THREAD_COUNT.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            workers.add(t);
+            t.start();
+        }
+    }
+
+    static synchronized OreClusterWorkerPool getInstance()
+    {
+        if(INSTANCE == null || !INSTANCE.running)
+            INSTANCE = new OreClusterWorkerPool();
+        return INSTANCE;
+    }
+
+    public static synchronized void shutdown()
+    {
+        if(INSTANCE == null) return;
+        INSTANCE.stop();
+        INSTANCE = null;
+    }
+
+    /**
+     * @param dimension
+     * @param task
+     * @return false if the dimension already has MAX_QUEUED_PER_DIMENSION tasks outstanding or the pool is stopped
+     */
+    public synchronized boolean submit(String dimension, Runnable task)
+    {
+        if(!running) return false;
+        DimensionQueue q = dimensions.computeIfAbsent(dimension, DimensionQueue::new);
+        if(q.outstanding() >= MAX_QUEUED_PER_DIMENSION) {
+            q.rejected++;
+            return false;
+        }
+
+        q.tasks.add(task);
+        q.submitted++;
+        if(!q.isActive) {
+            q.isActive = true;
+            active.addLast(q);
+        }
+        notify();
+        return true;
+    }
+
+    /**
+     * @param dimension
+     * @param weight relative share of worker time, at least 1
+     */
+    public synchronized void setWeight(String dimension, int weight) {
+        dimensions.computeIfAbsent(dimension, DimensionQueue::new).weight = Math.max(1, weight);
+    }
+
+    public synchronized void removeDimension(String dimension)
+    {
+        DimensionQueue q = dimensions.remove(dimension);
+        if(q == null) return;
+        q.tasks.clear();
+        active.remove(q);
+        q.isActive = false;
+    }
+
+    private synchronized void stop()
+    {
+        running = false;
+        for(DimensionQueue q : dimensions.values()) q.tasks.clear();
+        active.clear();
+        for(Thread t : workers) t.interrupt();
+        notifyAll();
+    }
+
+    /**
+     * Deficit round robin: the head queue runs tasks while it has credit, then earns its quantum
+     * and moves to the back of the rotation
+     * @return next queue to take a task from, null if the pool stopped
+     */
+    private synchronized DimensionQueue next() throws InterruptedException
+    {
+        while(running)
+        {
+            DimensionQueue q = active.peekFirst();
+            if(q == null) {
+                wait();
+                continue;
+            }
+            if(q.deficit <= 0) {
+                q.deficit += QUANTUM_NANOS * q.weight;
+                active.addLast(active.pollFirst());
+                continue;
+            }
+            return q;
+        }
+        return null;
+    }
+
+    private void workerLoop()
+    {
+        while(running)
+        {
+            DimensionQueue q;
+            Runnable task;
+            try {
+                synchronized (this) {
+                    q = next();
+                    if(q == null) return;
+                    task = q.tasks.poll();
+                    q.running++;
+                    if(q.tasks.isEmpty()) {
+                        active.remove(q);
+                        q.isActive = false;
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } catch (Exception e) {
+                LoggerProject.logError("019001", "Error in ore cluster worker for " + q.name + ": " + e.getMessage());
+            }
+            long used = System.nanoTime() - start;
+
+            synchronized (this) {
+                q.running--;
+                q.completed++;
+                q.busyNanos += used;
+                q.deficit = Math.max(q.deficit - used, -QUANTUM_NANOS * q.weight * MAX_DEBT_QUANTA);
+                if(!q.isActive) q.deficit = Math.min(q.deficit, 0);
+            }
+        }
+    }
+
+    /**
+     * @param dimension
+     * @return throughput statistics for one dimension's queue
+     */
+    public synchronized JsonObject toJson(String dimension)
+    {
+        JsonObject json = new JsonObject();
+        json.addProperty("workers", WORKER_COUNT);
+        DimensionQueue q = dimensions.get(dimension);
+        if(q == null) return json;
+        json.addProperty("weight", q.weight);
+        json.addProperty("queued", q.tasks.size());
+        json.addProperty("running", q.running);
+        json.addProperty("submitted", q.submitted);
+        json.addProperty("completed", q.completed);
+        json.addProperty("rejected", q.rejected);
+        json.addProperty("busyMillis", q.busyNanos / 1_000_000);
+        return json;
+    }
+
+}
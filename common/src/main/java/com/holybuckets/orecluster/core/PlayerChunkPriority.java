@@ -0,0 +1,145 @@
+package com.holybuckets.orecluster.core;
+
+import com.holybuckets.orecluster.core.model.ChunkKey;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.List;
+
+/**
+ * Class: PlayerChunkPriority
+ * Description: Snapshot of player chunk positions and look directions for one level, used by
+ *  ChunkKeyQueue to order pipeline work by distance to the nearest player.
+ *
+ *  Distances are grouped into BUCKETS rings that double in width, so a chunk only changes bucket
+ *  when a player moves a meaningful distance relative to it. Chunks inside a player's view cone are
+ *  promoted one ring so the clusters a player is looking at are manifested first.
+ *
+ *  update() runs on the server thread each tick; bucket() may be called from any thread.
+ *
+ *  #Methods
+ *  - update: refresh the snapshot from the level's players
+ *  - bucket: priority bucket of a chunk key, 0 is nearest
+ *  - distanceSqr: squared chunk distance to the nearest player
+ *  - version: incremented whenever the snapshot changes enough to reprioritize queued chunks
+ */
+public class PlayerChunkPriority {
+
+    public static final int BUCKETS = 8;
+    /** Upper chunk distance of buckets 0..BUCKETS-2, anything further is in the last bucket **/
+    private static final int[] RING_LIMITS = {2, 4, 8, 16, 32, 64, 128};
+    /** cos of the half angle of the view cone that earns a one ring promotion **/
+    private static final double VIEW_CONE_COS = Math.cos(Math.toRadians(50));
+    private static final int LOOK_SECTORS = 8;
+
+    //x, z, lookX, lookZ per player
+    private volatile float[] players = new float[0];
+    //chunk key and look sector per player at the last version change
+    private long[] lastChunks = new long[0];
+    private int[] lastSectors = new int[0];
+    private volatile int version;
+
+    /**
+     * Refresh player positions from the level, call on the server thread
+     * @param level
+     */
+    public void update(Level level)
+    {
+        List<? extends Player> ps = level.players();
+        int n = ps.size();
+        float[] next = new float[n * 4];
+        long[] chunks = new long[n];
+        int[] sectors = new int[n];
+        boolean changed = (n != lastChunks.length);
+
+        for(int i = 0; i < n; i++)
+        {
+            Player p = ps.get(i);
+            Vec3 look = p.getLookAngle();
+            double len = Math.sqrt(look.x * look.x + look.z * look.z);
+            float lx = (len < 1e-4) ? 0 : (float) (look.x / len);
+            float lz = (len < 1e-4) ? 0 : (float) (look.z / len);
+
+            next[i*4] = (float) (p.getX() / 16.0);
+            next[i*4 + 1] = (float) (p.getZ() / 16.0);
+            next[i*4 + 2] = lx;
+            next[i*4 + 3] = lz;
+
+            chunks[i] = ChunkKey.of(p.chunkPosition());
+            sectors[i] = (len < 1e-4) ? -1 : (int) Math.floor((Math.atan2(lz, lx) + Math.PI) / (2 * Math.PI) * LOOK_SECTORS) % LOOK_SECTORS;
+            if(!changed && (chunks[i] != lastChunks[i] || sectors[i] != lastSectors[i]))
+                changed = true;
+        }
+
+        this.players = next;
+        if(changed) {
+            this.lastChunks = chunks;
+            this.lastSectors = sectors;
+            this.version++;
+        }
+    }
+
+    /**
+     * @param chunkId
+     * @return bucket in [0, BUCKETS), 0 is nearest to a player, BUCKETS-1 if the level has no players
+     */
+    public int bucket(long chunkId)
+    {
+        float[] snapshot = this.players;
+        if(snapshot.length == 0) return BUCKETS - 1;
+
+        float cx = ChunkKey.x(chunkId) + 0.5f;
+        float cz = ChunkKey.z(chunkId) + 0.5f;
+        int best = BUCKETS - 1;
+        for(int i = 0; i < snapshot.length; i += 4)
+        {
+            float dx = cx - snapshot[i];
+            float dz = cz - snapshot[i + 1];
+            double dist = Math.sqrt(dx * dx + dz * dz);
+            int ring = ringOf(dist);
+            if(ring > 0 && dist > 0) {
+                double facing = (dx * snapshot[i + 2] + dz * snapshot[i + 3]) / dist;
+                if(facing >= VIEW_CONE_COS) ring--;
+            }
+            if(ring < best) best = ring;
+            if(best == 0) break;
+        }
+        return best;
+    }
+
+    /**
+     * @param chunkId
+     * @return squared chunk distance to the nearest player, Double.MAX_VALUE if the level has no players
+     */
+    public double distanceSqr(long chunkId)
+    {
+        float[] snapshot = this.players;
+        float cx = ChunkKey.x(chunkId) + 0.5f;
+        float cz = ChunkKey.z(chunkId) + 0.5f;
+        double best = Double.MAX_VALUE;
+        for(int i = 0; i < snapshot.length; i += 4) {
+            float dx = cx - snapshot[i];
+            float dz = cz - snapshot[i + 1];
+            best = Math.min(best, (double) dx * dx + (double) dz * dz);
+        }
+        return best;
+    }
+
+    private static int ringOf(double dist)
+    {
+        for(int i = 0; i < RING_LIMITS.length; i++) {
+            if(dist <= RING_LIMITS[i]) return i;
+        }
+        return BUCKETS - 1;
+    }
+
+    public int version() {
+        return version;
+    }
+
+    public int playerCount() {
+        return players.length / 4;
+    }
+
+}
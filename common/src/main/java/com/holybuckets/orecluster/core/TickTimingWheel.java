@@ -0,0 +1,183 @@
+package com.holybuckets.orecluster.core;
+
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Class: TickTimingWheel
+ * Description: Hierarchical timing wheel of long keys, usually packed ChunkKeys, each with a deadline in server ticks.
+ *  LEVELS wheels of SLOTS slots each cover 64, 4096, 262144 and 16777216 ticks; keys further out wait in an
+ *  overflow list. A key sits in the coarsest wheel that spans its deadline and cascades down a level as its slot
+ *  comes due, so advancing touches only the slots that have passed and the keys in them. Cost is proportional
+ *  to the keys that expire, not to the number of keys scheduled.
+ *
+ *  Rescheduling or cancelling a key only updates its deadline in an index; the old slot entry is dropped lazily
+ *  when its slot is reached. Thread safe.
+ *
+ *  #Methods
+ *  - schedule: set or move the deadline of a key
+ *  - cancel: remove a key
+ *  - advance: move the wheel to a tick and collect every key whose deadline has passed
+ */
+public class TickTimingWheel {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    //key, deadline pairs
+    private final LongArrayList[][] wheels;
+    private final LongArrayList overflow;
+    private final Long2LongOpenHashMap deadlines;
+    private long currentTick;     //last processed tick
+
+    /**
+     * @param startTick first tick the wheel is considered to be at
+     */
+    public TickTimingWheel(long startTick)
+    {
+        this.wheels = new LongArrayList[LEVELS][SLOTS];
+        for(int l = 0; l < LEVELS; l++)
+            for(int s = 0; s < SLOTS; s++)
+                wheels[l][s] = new LongArrayList();
+        this.overflow = new LongArrayList();
+        this.deadlines = new Long2LongOpenHashMap();
+        this.deadlines.defaultReturnValue(Long.MIN_VALUE);
+        this.currentTick = startTick;
+    }
+
+    /**
+     * Sets the deadline for key, replacing any earlier deadline. A deadline at or before the
+     * current tick fires on the next advance
+     * @param key
+     * @param deadlineTick
+     */
+    public synchronized void schedule(long key, long deadlineTick)
+    {
+        deadlines.put(key, deadlineTick);
+        insert(key, deadlineTick);
+    }
+
+    /**
+     * @param key
+     * @return true if key was scheduled
+     */
+    public synchronized boolean cancel(long key) {
+        return deadlines.remove(key) != Long.MIN_VALUE;
+    }
+
+    public synchronized boolean contains(long key) {
+        return deadlines.containsKey(key);
+    }
+
+    /**
+     * @param key
+     * @return deadline of key or Long.MIN_VALUE if it is not scheduled
+     */
+    public synchronized long deadline(long key) {
+        return deadlines.get(key);
+    }
+
+    public synchronized int size() {
+        return deadlines.size();
+    }
+
+    public synchronized void clear()
+    {
+        for(LongArrayList[] wheel : wheels)
+            for(LongArrayList slot : wheel) slot.clear();
+        overflow.clear();
+        deadlines.clear();
+    }
+
+    /**
+     * Places key in the coarsest wheel that still reaches its deadline relative to the last processed tick.
+     * The slot entry keeps the requested deadline so it can be validated against the index when reached
+     */
+    private void insert(long key, long deadline)
+    {
+        long fireTick = Math.max(deadline, currentTick + 1);
+        long delta = fireTick - currentTick;
+
+        for(int l = 0; l < LEVELS; l++)
+        {
+            if(delta <= (1L << (BITS * (l + 1)))) {
+                LongArrayList slot = wheels[l][(int) ((fireTick >> (BITS * l)) & MASK)];
+                slot.add(key);
+                slot.add(deadline);
+                return;
+            }
+        }
+        overflow.add(key);
+        overflow.add(deadline);
+    }
+
+    /**
+     * Advances the wheel to tick and collects every key whose deadline is at or before it.
+     * Expired keys are removed before expired is called, so the consumer may schedule them again
+     * @param tick
+     * @param expired
+     */
+    public void advance(long tick, LongConsumer expired)
+    {
+        LongArrayList due = new LongArrayList();
+        synchronized (this)
+        {
+            while(currentTick < tick)
+            {
+                long t = currentTick + 1;
+                cascade(t);
+                LongArrayList slot = wheels[0][(int) (t & MASK)];
+                for(int i = 0; i < slot.size(); i += 2)
+                {
+                    long key = slot.getLong(i);
+                    long deadline = slot.getLong(i + 1);
+                    if(deadlines.get(key) != deadline) continue;   //stale entry, key moved or cancelled
+                    deadlines.remove(key);
+                    due.add(key);
+                }
+                slot.clear();
+                currentTick = t;
+            }
+        }
+
+        for(int i = 0; i < due.size(); i++)
+            expired.accept(due.getLong(i));
+    }
+
+    /**
+     * Moves entries of each coarser wheel whose slot begins at tick t down towards wheel 0,
+     * coarsest first so entries can fall through several wheels in one tick
+     */
+    private void cascade(long t)
+    {
+        if((t & MASK) != 0) return;
+
+        int top = 1;
+        while(top < LEVELS && (t & ((1L << (BITS * top)) - 1)) == 0) top++;
+        //top-1 is the coarsest wheel whose slot boundary is t
+
+        if(top == LEVELS && (t & ((1L << (BITS * LEVELS)) - 1)) == 0)
+            reinsert(overflow);
+        for(int l = top - 1; l >= 1; l--)
+            reinsert(wheels[l][(int) ((t >> (BITS * l)) & MASK)]);
+    }
+
+    private void reinsert(LongArrayList slot)
+    {
+        if(slot.isEmpty()) return;
+        LongArrayList entries = new LongArrayList(slot);
+        slot.clear();
+        for(int i = 0; i < entries.size(); i += 2)
+        {
+            long key = entries.getLong(i);
+            long deadline = entries.getLong(i + 1);
+            if(deadlines.get(key) != deadline) continue;
+            insert(key, deadline);
+        }
+    }
+
+}
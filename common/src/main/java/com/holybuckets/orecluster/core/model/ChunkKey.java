@@ -0,0 +1,87 @@
+package com.holybuckets.orecluster.core.model;
+
+import com.holybuckets.foundation.HBUtil.ChunkUtil;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.chunk.ChunkAccess;
+
+/**
+ * Class: ChunkKey
+ * Description: Packed long representation of a chunk position used internally by the
+ *  OreClusterManager in place of "x,z" String chunk ids. Uses the same layout as
+ *  ChunkPos.toLong() so keys can be passed directly to vanilla chunk maps.
+ *
+ *  The String form of a chunk id should only be created at the edges of the mod:
+ *  commands, JSON and NBT. Use toId() and fromId() to convert.
+ *
+ *  #Methods
+ *  - of: pack chunk coordinates, positions or chunks into a key
+ *  - x, z: unpack the chunk coordinates of a key
+ *  - toId, fromId: convert to and from the legacy String chunk id
+ *  - dist, distSqr: distance between two chunk keys in chunks
+ */
+public final class ChunkKey {
+
+    /** Sentinel returned by primitive polls when no key is available, never a valid chunk **/
+    public static final long NONE = Long.MIN_VALUE;
+
+    private ChunkKey() {}
+
+    public static long of(int x, int z) {
+        return ChunkPos.asLong(x, z);
+    }
+
+    public static long of(ChunkPos pos) {
+        return pos.toLong();
+    }
+
+    public static long of(ChunkAccess chunk) {
+        return chunk.getPos().toLong();
+    }
+
+    public static long of(BlockPos pos) {
+        return ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+    }
+
+    public static int x(long key) {
+        return ChunkPos.getX(key);
+    }
+
+    public static int z(long key) {
+        return ChunkPos.getZ(key);
+    }
+
+    public static ChunkPos toChunkPos(long key) {
+        return new ChunkPos(key);
+    }
+
+    /**
+     * Formats the key as a legacy String chunk id, only use for commands, JSON and NBT
+     * @param key
+     * @return "x,z" chunk id
+     */
+    public static String toId(long key) {
+        return ChunkUtil.getId(x(key), z(key));
+    }
+
+    /**
+     * Parses a legacy String chunk id into a key
+     * @param id
+     * @return packed key or NONE if id is null
+     */
+    public static long fromId(String id) {
+        if(id == null) return NONE;
+        return ChunkUtil.getChunkPos(id).toLong();
+    }
+
+    public static float dist(long a, long b) {
+        return (float) Math.sqrt(distSqr(a, b));
+    }
+
+    public static long distSqr(long a, long b) {
+        long dx = x(a) - x(b);
+        long dz = z(a) - z(b);
+        return dx*dx + dz*dz;
+    }
+
+}
@@ -0,0 +1,477 @@
+package com.holybuckets.orecluster.core.model;
+
+import it.unimi.dsi.fastutil.longs.AbstractLongSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+import java.util.function.LongConsumer;
+
+/**
+ * Class: ChunkKeySet
+ * Description: Compressed set of packed ChunKeys, partitioned into 32x32 chunk regions in the style of a roaring bitmap.
+ *  Each region holds its chunks in a sorted short[] of local indices while sparse and switches to a 1024 bit
+ *  long[16] bitmap once it holds more than ARRAY_MAX chunks, so a fully explored region costs 128 bytes
+ *  instead of tens of bytes per chunk. Membership is one region lookup plus a bit test or binary search,
+ *  union and difference with another ChunkKeySet work region by region.
+ *
+ *  Every region changed since the last drainDirtyRegions() is remembered so persistence can write only
+ *  changed regions.
+ *
+ *  Methods are synchronized on the set; like the LongSets.synchronize wrappers it replaces, iteration
+ *  must be done inside synchronized(set).
+ *
+ *  #Methods
+ *  - add, remove, contains: single chunk operations
+ *  - addAll, removeAll: region wise union and difference when given another ChunkKeySet
+ *  - regionOf, regionKeys, getRegionBits, setRegionBits: region level access for persistence
+ *  - drainDirtyRegions: regions changed since the last call
+ */
+public class ChunkKeySet extends AbstractLongSet {
+
+    public static final int REGION_BITS = 5;
+    public static final int REGION_SIZE = 1 << REGION_BITS;
+    private static final int REGION_MASK = REGION_SIZE - 1;
+    public static final int REGION_CHUNKS = REGION_SIZE * REGION_SIZE;
+    public static final int BITMAP_WORDS = REGION_CHUNKS / 64;
+    /** Largest array container, a sorted short[ARRAY_MAX] is the same size as the bitmap **/
+    private static final int ARRAY_MAX = BITMAP_WORDS * 4;
+
+    private final Long2ObjectOpenHashMap<Region> regions;
+    private final LongOpenHashSet dirtyRegions;
+    private int size;
+
+    public ChunkKeySet() {
+        this.regions = new Long2ObjectOpenHashMap<>();
+        this.dirtyRegions = new LongOpenHashSet();
+    }
+
+    public ChunkKeySet(LongCollection keys) {
+        this();
+        addAll(keys);
+    }
+
+    /** Region key of a chunk key, region coordinates packed in the ChunkKey layout **/
+    public static long regionOf(long chunkKey) {
+        return ChunkKey.of(ChunkKey.x(chunkKey) >> REGION_BITS, ChunkKey.z(chunkKey) >> REGION_BITS);
+    }
+
+    private static int localIndex(long chunkKey) {
+        return ((ChunkKey.z(chunkKey) & REGION_MASK) << REGION_BITS) | (ChunkKey.x(chunkKey) & REGION_MASK);
+    }
+
+    private static long chunkOf(long regionKey, int local) {
+        return ChunkKey.of((ChunkKey.x(regionKey) << REGION_BITS) | (local & REGION_MASK),
+            (ChunkKey.z(regionKey) << REGION_BITS) | (local >> REGION_BITS));
+    }
+
+    /**
+     * One region's container: sorted local indices while sparse, a bitmap once dense
+     */
+    private static final class Region
+    {
+        short[] array = new short[4];
+        long[] bits;
+        int size;
+
+        boolean contains(int local)
+        {
+            if(bits != null) return (bits[local >>> 6] & (1L << local)) != 0;
+            return Arrays.binarySearch(array, 0, size, (short) local) >= 0;
+        }
+
+        boolean add(int local)
+        {
+            if(bits != null) {
+                long mask = 1L << local;
+                if((bits[local >>> 6] & mask) != 0) return false;
+                bits[local >>> 6] |= mask;
+                size++;
+                return true;
+            }
+
+            int i = Arrays.binarySearch(array, 0, size, (short) local);
+            if(i >= 0) return false;
+            if(size == ARRAY_MAX) {
+                toBitmap();
+                return add(local);
+            }
+            i = -i - 1;
+            if(size == array.length) array = Arrays.copyOf(array, Math.min(ARRAY_MAX, size * 2));
+            System.arraycopy(array, i, array, i + 1, size - i);
+            array[i] = (short) local;
+            size++;
+            return true;
+        }
+
+        boolean remove(int local)
+        {
+            if(bits != null) {
+                long mask = 1L << local;
+                if((bits[local >>> 6] & mask) == 0) return false;
+                bits[local >>> 6] &= ~mask;
+                size--;
+                if(size <= ARRAY_MAX / 2) toArray();
+                return true;
+            }
+
+            int i = Arrays.binarySearch(array, 0, size, (short) local);
+            if(i < 0) return false;
+            System.arraycopy(array, i + 1, array, i, size - i - 1);
+            size--;
+            return true;
+        }
+
+        /** @return next local index at or after from, -1 if none **/
+        int next(int from)
+        {
+            if(from >= REGION_CHUNKS) return -1;
+            if(bits != null) {
+                int w = from >>> 6;
+                long word = bits[w] & (-1L << from);
+                while(true) {
+                    if(word != 0) return (w << 6) + Long.numberOfTrailingZeros(word);
+                    if(++w == BITMAP_WORDS) return -1;
+                    word = bits[w];
+                }
+            }
+            int i = Arrays.binarySearch(array, 0, size, (short) from);
+            if(i < 0) i = -i - 1;
+            return (i < size) ? array[i] : -1;
+        }
+
+        long[] toBits()
+        {
+            if(bits != null) return bits.clone();
+            long[] b = new long[BITMAP_WORDS];
+            for(int i = 0; i < size; i++) b[array[i] >>> 6] |= 1L << array[i];
+            return b;
+        }
+
+        void setBits(long[] b)
+        {
+            this.bits = b;
+            this.array = null;
+            int n = 0;
+            for(long w : b) n += Long.bitCount(w);
+            this.size = n;
+            if(size <= ARRAY_MAX / 2) toArray();
+        }
+
+        private void toBitmap() {
+            bits = toBits();
+            array = null;
+        }
+
+        private void toArray()
+        {
+            short[] a = new short[Math.max(4, size)];
+            int n = 0;
+            for(int w = 0; w < BITMAP_WORDS; w++) {
+                long word = bits[w];
+                while(word != 0) {
+                    a[n++] = (short) ((w << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            array = a;
+            bits = null;
+        }
+
+        long estimatedBytes() {
+            return 32 + ((bits != null) ? 16 + bits.length * 8L : 16 + array.length * 2L);
+        }
+    }
+
+    @Override
+    public synchronized boolean add(long chunkKey)
+    {
+        long r = regionOf(chunkKey);
+        Region region = regions.get(r);
+        if(region == null) {
+            region = new Region();
+            regions.put(r, region);
+        }
+        if(!region.add(localIndex(chunkKey))) return false;
+        size++;
+        dirtyRegions.add(r);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(long chunkKey)
+    {
+        long r = regionOf(chunkKey);
+        Region region = regions.get(r);
+        if(region == null || !region.remove(localIndex(chunkKey))) return false;
+        if(region.size == 0) regions.remove(r);
+        size--;
+        dirtyRegions.add(r);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean contains(long chunkKey)
+    {
+        Region region = regions.get(regionOf(chunkKey));
+        return region != null && region.contains(localIndex(chunkKey));
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public synchronized void clear()
+    {
+        dirtyRegions.addAll(regions.keySet());
+        regions.clear();
+        size = 0;
+    }
+
+    @Override
+    public boolean addAll(LongCollection c)
+    {
+        if(!(c instanceof ChunkKeySet)) return super.addAll(c);
+        ChunkKeySet other = (ChunkKeySet) c;
+        if(other == this) return false;
+
+        boolean changed = false;
+        Long2ObjectOpenHashMap<long[]> add = other.snapshotBits();
+        synchronized (this) {
+            for(Long2ObjectMap.Entry<long[]> e : add.long2ObjectEntrySet()) {
+                long r = e.getLongKey();
+                long[] bits = getRegionBitsInternal(r);
+                long[] src = e.getValue();
+                boolean regionChanged = false;
+                for(int w = 0; w < BITMAP_WORDS; w++) {
+                    long merged = bits[w] | src[w];
+                    if(merged != bits[w]) { bits[w] = merged; regionChanged = true; }
+                }
+                if(regionChanged) { setRegionBitsInternal(r, bits); changed = true; }
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Long> c) {
+        if(c instanceof LongCollection) return addAll((LongCollection) c);
+        return super.addAll(c);
+    }
+
+    @Override
+    public boolean removeAll(LongCollection c)
+    {
+        if(!(c instanceof ChunkKeySet)) return super.removeAll(c);
+        ChunkKeySet other = (ChunkKeySet) c;
+        if(other == this) { boolean had = !isEmpty(); clear(); return had; }
+
+        boolean changed = false;
+        Long2ObjectOpenHashMap<long[]> sub = other.snapshotBits();
+        synchronized (this) {
+            for(Long2ObjectMap.Entry<long[]> e : sub.long2ObjectEntrySet()) {
+                long r = e.getLongKey();
+                if(!regions.containsKey(r)) continue;
+                long[] bits = getRegionBitsInternal(r);
+                long[] src = e.getValue();
+                boolean regionChanged = false;
+                for(int w = 0; w < BITMAP_WORDS; w++) {
+                    long kept = bits[w] & ~src[w];
+                    if(kept != bits[w]) { bits[w] = kept; regionChanged = true; }
+                }
+                if(regionChanged) { setRegionBitsInternal(r, bits); changed = true; }
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        if(c instanceof LongCollection) return removeAll((LongCollection) c);
+        return super.removeAll(c);
+    }
+
+    /**
+     * Iterates in region order, then by local index. Not thread safe, iterate inside synchronized(set).
+     * Tolerates removal through the iterator or the set while iterating
+     */
+    @Override
+    public LongIterator iterator()
+    {
+        final long[] regionKeys = regions.keySet().toLongArray();
+        return new LongIterator() {
+            int regionIndex = 0;
+            int local = -1;         //next local index in regionKeys[regionIndex], -1 when not yet found
+            long last = ChunkKey.NONE;
+            int nextFrom = 0;
+
+            private boolean advance()
+            {
+                while(regionIndex < regionKeys.length)
+                {
+                    if(local >= 0) return true;
+                    Region region = regions.get(regionKeys[regionIndex]);
+                    local = (region == null) ? -1 : region.next(nextFrom);
+                    if(local >= 0) return true;
+                    regionIndex++;
+                    nextFrom = 0;
+                }
+                return false;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return advance();
+            }
+
+            @Override
+            public long nextLong()
+            {
+                if(!advance()) throw new NoSuchElementException();
+                last = chunkOf(regionKeys[regionIndex], local);
+                nextFrom = local + 1;
+                local = -1;
+                return last;
+            }
+
+            @Override
+            public void remove()
+            {
+                if(last == ChunkKey.NONE) throw new IllegalStateException();
+                ChunkKeySet.this.remove(last);
+                last = ChunkKey.NONE;
+            }
+        };
+    }
+
+    /** Region level access **/
+
+    /**
+     * @return keys of all regions holding at least one chunk
+     */
+    public synchronized LongSet regionKeys() {
+        return new LongOpenHashSet(regions.keySet());
+    }
+
+    /**
+     * @param regionKey
+     * @return copy of the region as a long[BITMAP_WORDS] bitmap, all zero if the region is empty
+     */
+    public synchronized long[] getRegionBits(long regionKey) {
+        return getRegionBitsInternal(regionKey);
+    }
+
+    /**
+     * Replaces the contents of a region, used when loading from storage
+     * @param regionKey
+     * @param bits long[BITMAP_WORDS] bitmap indexed by (z & 31) * 32 + (x & 31)
+     */
+    public synchronized void setRegionBits(long regionKey, long[] bits) {
+        setRegionBitsInternal(regionKey, bits.clone());
+    }
+
+    /** Copies every region as a bitmap so two sets are never locked at once **/
+    private synchronized Long2ObjectOpenHashMap<long[]> snapshotBits()
+    {
+        Long2ObjectOpenHashMap<long[]> bits = new Long2ObjectOpenHashMap<>(regions.size());
+        for(Long2ObjectMap.Entry<Region> e : regions.long2ObjectEntrySet())
+            bits.put(e.getLongKey(), e.getValue().toBits());
+        return bits;
+    }
+
+    /**
+     * Adds a region's chunks read from storage without marking the region dirty, chunks added
+     * in memory before the region was read keep their own dirty mark
+     * @param regionKey
+     * @param bits long[BITMAP_WORDS] bitmap indexed by (z & 31) * 32 + (x & 31)
+     */
+    public synchronized void mergeRegionBits(long regionKey, long[] bits)
+    {
+        boolean wasDirty = dirtyRegions.contains(regionKey);
+        long[] merged = getRegionBitsInternal(regionKey);
+        for(int w = 0; w < BITMAP_WORDS; w++) merged[w] |= bits[w];
+        setRegionBitsInternal(regionKey, merged);
+        if(!wasDirty) dirtyRegions.remove(regionKey);
+    }
+
+    private long[] getRegionBitsInternal(long regionKey) {
+        Region region = regions.get(regionKey);
+        return (region == null) ? new long[BITMAP_WORDS] : region.toBits();
+    }
+
+    private void setRegionBitsInternal(long regionKey, long[] bits)
+    {
+        Region region = regions.get(regionKey);
+        if(region != null) size -= region.size;
+        else region = new Region();
+
+        region.setBits(bits);
+        if(region.size == 0) regions.remove(regionKey);
+        else regions.put(regionKey, region);
+        size += region.size;
+        dirtyRegions.add(regionKey);
+    }
+
+    /**
+     * Calls action for each chunk in one region
+     * @param regionKey
+     * @param action
+     */
+    public synchronized void forEachInRegion(long regionKey, LongConsumer action)
+    {
+        Region region = regions.get(regionKey);
+        if(region == null) return;
+        for(int local = region.next(0); local >= 0; local = region.next(local + 1))
+            action.accept(chunkOf(regionKey, local));
+    }
+
+    /**
+     * @return regions changed since the previous call, the dirty set is reset
+     */
+    public synchronized LongSet drainDirtyRegions()
+    {
+        LongSet dirty = new LongOpenHashSet(dirtyRegions);
+        dirtyRegions.clear();
+        return dirty;
+    }
+
+    /**
+     * Marks a region changed again, used when persisting a drained region failed
+     * @param regionKey
+     */
+    public synchronized void markRegionDirty(long regionKey) {
+        dirtyRegions.add(regionKey);
+    }
+
+    public synchronized boolean hasDirtyRegions() {
+        return !dirtyRegions.isEmpty();
+    }
+
+    public synchronized int regionCount() {
+        return regions.size();
+    }
+
+    /**
+     * @return approximate heap used by region containers, for healthCheckStatistics
+     */
+    public synchronized long estimatedBytes()
+    {
+        long bytes = 64 + regions.size() * 24L;
+        for(Region region : regions.values()) bytes += region.estimatedBytes();
+        return bytes;
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.holybuckets.orecluster.core.model;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.core.BlockPos;
+
+/**
+ * Class: ClusterFootprint
+ * Description: Positions of the cluster ore blocks placed in one chunk that are still in the world,
+ *  kept as a 4096 bit bitset per 16x16x16 chunk section. Block changes are tested and recorded in
+ *  O(1), so harvest progress is counted as blocks are broken instead of re-scanning the chunk.
+ *
+ *  Only holds positions inside its own chunk, the section local index can't tell chunks apart.
+ *
+ *  Persisted as a packed int per position, (sectionY << 12) | section local index.
+ *
+ *  #Methods
+ *  - place: positions written by cluster generation or regeneration, starts a new harvest count
+ *  - contains, harvest: O(1) test and removal of a position
+ *  - placed, harvested, remaining: harvest progress since the last placement
+ *  - toPacked, fromPacked: NBT form
+ */
+public class ClusterFootprint {
+
+    private static final int WORDS = 4096 / 64;
+
+    private final Int2ObjectOpenHashMap<long[]> sections = new Int2ObjectOpenHashMap<>();
+    private int remaining;
+    private int harvested;
+
+    private static int index(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    /**
+     * Adds the positions of newly placed cluster blocks. Earlier harvest progress is dropped, the
+     * blocks still standing plus the new ones become the footprint
+     * @param positions world positions inside the footprint's chunk
+     */
+    public synchronized void place(Iterable<BlockPos> positions)
+    {
+        for(BlockPos pos : positions) {
+            long[] bits = sections.computeIfAbsent(pos.getY() >> 4, k -> new long[WORDS]);
+            int i = index(pos.getX(), pos.getY(), pos.getZ());
+            if((bits[i >>> 6] & (1L << i)) == 0) {
+                bits[i >>> 6] |= 1L << i;
+                remaining++;
+            }
+        }
+        harvested = 0;
+    }
+
+    public synchronized boolean contains(BlockPos pos)
+    {
+        long[] bits = sections.get(pos.getY() >> 4);
+        if(bits == null) return false;
+        int i = index(pos.getX(), pos.getY(), pos.getZ());
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Removes pos from the footprint and counts it as harvested
+     * @param pos
+     * @return true if pos was part of the footprint
+     */
+    public synchronized boolean harvest(BlockPos pos)
+    {
+        long[] bits = sections.get(pos.getY() >> 4);
+        if(bits == null) return false;
+        int i = index(pos.getX(), pos.getY(), pos.getZ());
+        if((bits[i >>> 6] & (1L << i)) == 0) return false;
+        bits[i >>> 6] &= ~(1L << i);
+        remaining--;
+        harvested++;
+        return true;
+    }
+
+    /** Cluster blocks placed at the last (re)generation that are accounted for **/
+    public synchronized int placed() {
+        return remaining + harvested;
+    }
+
+    public synchronized int harvested() {
+        return harvested;
+    }
+
+    public synchronized int remaining() {
+        return remaining;
+    }
+
+    public synchronized boolean isEmpty() {
+        return remaining == 0 && harvested == 0;
+    }
+
+    /**
+     * @return remaining positions packed as (sectionY << 12) | local index
+     */
+    public synchronized int[] toPacked()
+    {
+        IntArrayList packed = new IntArrayList(remaining);
+        for(Int2ObjectMap.Entry<long[]> e : sections.int2ObjectEntrySet()) {
+            long[] bits = e.getValue();
+            for(int w = 0; w < WORDS; w++) {
+                long word = bits[w];
+                while(word != 0) {
+                    packed.add((e.getIntKey() << 12) | (w << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+        return packed.toIntArray();
+    }
+
+    /**
+     * @param packed positions written by toPacked
+     * @param harvested harvest count saved with them
+     * @return footprint of a chunk read from NBT
+     */
+    public static ClusterFootprint fromPacked(int[] packed, int harvested)
+    {
+        ClusterFootprint footprint = new ClusterFootprint();
+        for(int p : packed) {
+            long[] bits = footprint.sections.computeIfAbsent(p >> 12, k -> new long[WORDS]);
+            int i = p & 0xFFF;
+            if((bits[i >>> 6] & (1L << i)) == 0) {
+                bits[i >>> 6] |= 1L << i;
+                footprint.remaining++;
+            }
+        }
+        footprint.harvested = Math.max(0, harvested);
+        return footprint;
+    }
+
+}
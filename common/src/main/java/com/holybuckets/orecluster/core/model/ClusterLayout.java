@@ -0,0 +1,253 @@
+package com.holybuckets.orecluster.core.model;
+
+import com.holybuckets.foundation.block.ModBlocks;
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.NbtUtils;
+import net.minecraft.nbt.Tag;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.LevelAccessor;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class: ClusterLayout
+ * Description: Block states one cluster was generated with, as a palette of states plus one packed
+ *  int per position inside the cluster's chunk, (sectionY << 20) | (palette index << 12) | section
+ *  local index. Entries are sorted so each chunk section is visited once when the layout is compared
+ *  to the world. Clusters reaching into neighbouring chunks keep those positions in an overflow list of
+ *  packed world positions with their palette index, the local index alone can't tell chunks apart.
+ *
+ *  Lets regeneration restore only the positions that no longer match instead of generating the
+ *  cluster again and rewriting every block, and lets a chunk saved between pregeneration and
+ *  manifestation restore its pending block updates without generating its clusters again.
+ *
+ *  Persisted as the palette, one int header per run of positions sharing a section and state,
+ *  (sectionY << 21) | (palette index << 13) | count, and the section local indexes of all runs
+ *  packed as 12 bits each, 1.5 bytes per position. Overflow positions take 9 bytes each.
+ *
+ *  Immutable.
+ *
+ *  #Methods
+ *  - of: layout of freshly generated cluster positions
+ *  - missing: positions whose block in the world differs from the layout
+ *  - positions: every state and world position of the layout
+ *  - size, palette: contents
+ *  - save, load: NBT form
+ */
+public class ClusterLayout {
+
+    private static final int MAX_PALETTE = 256;
+
+    private final BlockState[] palette;
+    private final int[] entries;
+    //Positions outside the cluster's chunk, BlockPos.asLong and palette index
+    private final long[] overflow;
+    private final byte[] overflowIds;
+
+    private ClusterLayout(BlockState[] palette, int[] entries, long[] overflow, byte[] overflowIds) {
+        this.palette = palette;
+        this.entries = entries;
+        this.overflow = overflow;
+        this.overflowIds = overflowIds;
+    }
+
+    private static int index(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    /**
+     * @param chunkPos chunk the cluster belongs to
+     * @param positions block states and world positions of one generated cluster, empty blocks are left out
+     * @return layout of positions, null if the cluster uses more than MAX_PALETTE states
+     */
+    public static ClusterLayout of(ChunkPos chunkPos, List<Pair<BlockState, BlockPos>> positions)
+    {
+        Map<BlockState, Integer> paletteIds = new LinkedHashMap<>();
+        IntArrayList packed = new IntArrayList(positions.size());
+        LongArrayList overflow = new LongArrayList();
+        ByteArrayList overflowIds = new ByteArrayList();
+        BlockState empty = ModBlocks.empty.defaultBlockState();
+        for(Pair<BlockState, BlockPos> p : positions)
+        {
+            if(p.getLeft().equals(empty)) continue;
+            Integer id = paletteIds.computeIfAbsent(p.getLeft(), k -> paletteIds.size());
+            if(id >= MAX_PALETTE) return null;
+            BlockPos pos = p.getRight();
+            if((pos.getX() >> 4) != chunkPos.x || (pos.getZ() >> 4) != chunkPos.z) {
+                overflow.add(pos.asLong());
+                overflowIds.add((byte) (int) id);
+                continue;
+            }
+            packed.add(((pos.getY() >> 4) << 20) | (id << 12) | index(pos.getX(), pos.getY(), pos.getZ()));
+        }
+        int[] entries = packed.toIntArray();
+        Arrays.sort(entries);
+        int n = 0;
+        for(int i = 0; i < entries.length; i++)
+            if(n == 0 || entries[i] != entries[n - 1]) entries[n++] = entries[i];
+        entries = Arrays.copyOf(entries, n);
+        return new ClusterLayout(paletteIds.keySet().toArray(new BlockState[0]), entries,
+            overflow.toLongArray(), overflowIds.toByteArray());
+    }
+
+    /**
+     * Compares the layout to the world, positions inside chunk section by section and overflow positions
+     * against the neighbouring chunk that owns them. Overflow positions in a neighbour that is not loaded
+     * are skipped, the next regeneration checks them again. Reads live block states, call on the server thread
+     * @param level
+     * @param chunk chunk the layout was generated in
+     * @return block states and positions to write back so the world matches the layout again
+     */
+    public List<Pair<BlockState, BlockPos>> missing(LevelAccessor level, LevelChunk chunk)
+    {
+        List<Pair<BlockState, BlockPos>> missing = new ArrayList<>();
+        int baseX = chunk.getPos().getMinBlockX();
+        int baseZ = chunk.getPos().getMinBlockZ();
+        LevelChunkSection[] sections = chunk.getSections();
+
+        int i = 0;
+        while(i < entries.length)
+        {
+            int sectionY = entries[i] >> 20;
+            int sectionIndex = chunk.getSectionIndexFromSectionY(sectionY);
+            LevelChunkSection section = (sectionIndex < 0 || sectionIndex >= sections.length) ? null : sections[sectionIndex];
+            for(; i < entries.length && (entries[i] >> 20) == sectionY; i++)
+            {
+                if(section == null) continue;
+                int local = entries[i] & 0xFFF;
+                int x = local & 15, z = (local >> 4) & 15, y = local >> 8;
+                BlockState expected = palette[(entries[i] >>> 12) & 0xFF];
+                if(section.getBlockState(x, y, z) == expected) continue;
+                missing.add(Pair.of(expected, new BlockPos(baseX + x, (sectionY << 4) + y, baseZ + z)));
+            }
+        }
+
+        for(int j = 0; j < overflow.length; j++)
+        {
+            BlockPos pos = BlockPos.of(overflow[j]);
+            LevelChunk owner = level.getChunkSource().getChunkNow(pos.getX() >> 4, pos.getZ() >> 4);
+            if(owner == null) continue;
+            BlockState expected = palette[overflowIds[j] & 0xFF];
+            if(owner.getBlockState(pos) != expected) missing.add(Pair.of(expected, pos));
+        }
+        return missing;
+    }
+
+    /**
+     * @param chunkPos chunk the layout was generated in
+     * @return block states and world positions of the whole layout, including neighbouring chunks
+     */
+    public List<Pair<BlockState, BlockPos>> positions(ChunkPos chunkPos)
+    {
+        List<Pair<BlockState, BlockPos>> positions = new ArrayList<>(entries.length);
+        int baseX = chunkPos.getMinBlockX();
+        int baseZ = chunkPos.getMinBlockZ();
+        for(int e : entries) {
+            int local = e & 0xFFF;
+            positions.add(Pair.of(palette[(e >>> 12) & 0xFF],
+                new BlockPos(baseX + (local & 15), ((e >> 20) << 4) + (local >> 8), baseZ + ((local >> 4) & 15))));
+        }
+        for(int i = 0; i < overflow.length; i++)
+            positions.add(Pair.of(palette[overflowIds[i] & 0xFF], BlockPos.of(overflow[i])));
+        return positions;
+    }
+
+    public int size() {
+        return entries.length + overflow.length;
+    }
+
+    public List<BlockState> palette() {
+        return List.of(palette);
+    }
+
+    public CompoundTag save()
+    {
+        CompoundTag tag = new CompoundTag();
+        ListTag paletteTag = new ListTag();
+        for(BlockState state : palette) paletteTag.add(NbtUtils.writeBlockState(state));
+        tag.put("palette", paletteTag);
+
+        //Runs of entries with the same section and state, entries are sorted so runs are contiguous
+        IntArrayList runs = new IntArrayList();
+        for(int i = 0; i < entries.length; ) {
+            int run = entries[i] >> 12;
+            int start = i;
+            while(i < entries.length && (entries[i] >> 12) == run) i++;
+            runs.add(((entries[start] >> 20) << 21) | (((entries[start] >>> 12) & 0xFF) << 13) | (i - start));
+        }
+        tag.putIntArray("runs", runs.toIntArray());
+
+        byte[] packed = new byte[(entries.length * 3 + 1) / 2];
+        for(int i = 0; i < entries.length; i += 2) {
+            int a = entries[i] & 0xFFF;
+            int b = (i + 1 < entries.length) ? entries[i + 1] & 0xFFF : 0;
+            int j = (i / 2) * 3;
+            packed[j] = (byte) (a >> 4);
+            packed[j + 1] = (byte) (((a & 15) << 4) | (b >> 8));
+            if(j + 2 < packed.length) packed[j + 2] = (byte) b;
+        }
+        tag.putByteArray("positions", packed);
+        if(overflow.length > 0) {
+            tag.putLongArray("overflow", overflow);
+            tag.putByteArray("overflowPalette", overflowIds);
+        }
+        return tag;
+    }
+
+    /**
+     * @param tag written by save
+     * @return layout read from NBT, null if tag holds none
+     */
+    public static ClusterLayout load(CompoundTag tag)
+    {
+        if(tag == null || !tag.contains("palette") || !tag.contains("runs")) return null;
+        ListTag paletteTag = tag.getList("palette", Tag.TAG_COMPOUND);
+        BlockState[] palette = new BlockState[paletteTag.size()];
+        for(int i = 0; i < palette.length; i++)
+            palette[i] = NbtUtils.readBlockState(BuiltInRegistries.BLOCK.asLookup(), paletteTag.getCompound(i));
+
+        int[] runs = tag.getIntArray("runs");
+        byte[] packed = tag.getByteArray("positions");
+        int total = 0;
+        for(int run : runs) total += run & 0x1FFF;
+        if(packed.length < (total * 3 + 1) / 2) return null;
+
+        int[] entries = new int[total];
+        int i = 0;
+        for(int run : runs)
+        {
+            int id = (run >>> 13) & 0xFF;
+            if(id >= palette.length) return null;
+            int head = ((run >> 21) << 20) | (id << 12);
+            for(int n = run & 0x1FFF; n > 0; n--, i++) {
+                int j = (i / 2) * 3;
+                int local = ((i & 1) == 0)
+                    ? ((packed[j] & 0xFF) << 4) | ((packed[j + 1] & 0xFF) >> 4)
+                    : ((packed[j + 1] & 15) << 8) | (packed[j + 2] & 0xFF);
+                entries[i] = head | local;
+            }
+        }
+
+        long[] overflow = tag.getLongArray("overflow");
+        byte[] overflowIds = tag.getByteArray("overflowPalette");
+        if(overflowIds.length != overflow.length) return null;
+        for(byte id : overflowIds)
+            if((id & 0xFF) >= palette.length) return null;
+        return new ClusterLayout(palette, entries, overflow, overflowIds);
+    }
+
+}
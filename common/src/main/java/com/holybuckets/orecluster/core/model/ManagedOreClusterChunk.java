@@ -14,6 +14,7 @@ import com.holybuckets.orecluster.core.OreClusterCalculator;
 import com.holybuckets.orecluster.core.OreClusterManager;
 import com.holybuckets.orecluster.core.OreClusterStatus;
 import io.netty.util.collection.IntObjectHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import net.blay09.mods.balm.api.event.ChunkLoadingEvent;
 import net.minecraft.core.BlockPos;
 import net.minecraft.nbt.CompoundTag;
@@ -31,7 +32,7 @@ import org.apache.commons.lang3.tuple.Pair;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.holybuckets.foundation.HBUtil.*;
 
@@ -49,6 +50,10 @@ import static com.holybuckets.orecluster.config.model.OreClusterConfigModel.OreC
  *  - ChunkPos pos: The 2D position of the chunk in the world
  *  - String id: The unique id of the chunk
  *  - String status: The status of the chunk in the cluster generation process
+ *  - int regenEpoch: The level regen epoch this chunk's clusters were last generated or regenerated in
+ *  - long regenDueTick: Tick with sleep at which the chunk's clusters regenerate next, 0 if not scheduled
+ *  - ClusterFootprint footprint: Cluster ore positions still standing, null until clusters are generated
+ *  - Map<OreClusterId, ClusterLayout> clusterLayouts: Block states each cluster was generated with, used to regenerate only what is missing
  *
  *  - HashMap<String, Vec3i> clusters: The clusters in the chunk
  *  - isLoaded: The chunk is loaded
@@ -56,6 +61,8 @@ import static com.holybuckets.orecluster.config.model.OreClusterConfigModel.OreC
  *  #Methods
  *  - Getters and Setters
  *  - save: Save the data as NBT using compoundTag
+ *  - tryClaim, release: non blocking per chunk edit claim used by OreClusterManager::editManagedChunk
+ *  - placeFootprint, onBlockChanged: O(1) harvest tracking fed by MixinLevel
  *
  */
 
@@ -65,6 +72,7 @@ public class ManagedOreClusterChunk implements IMangedChunkData {
     private static final String NBT_KEY_HEADER = "managedOreClusterChunk";
     
     public static final String TEST_ID = "-1,0";
+    public static final long TEST_KEY = ChunkKey.of(-1, 0);
 
 
     public static final int MAX_ORIGINAL_ORES = 8;
@@ -77,11 +85,17 @@ public class ManagedOreClusterChunk implements IMangedChunkData {
     /** Variables **/
     private LevelAccessor level;
     private String id;
+    private long key;
     private ChunkPos pos;
     private OreClusterStatus status;
     private long timeUnloaded;
+    private volatile long timeSerialized;
     private long timeLastLoaded;
     private long tickLoaded;
+    private int regenEpoch;
+    private long regenDueTick;
+    private volatile ClusterFootprint footprint;
+    private final Map<OreClusterId, ClusterLayout> clusterLayouts = new ConcurrentHashMap<>();
     private boolean isReady;
 
     private HashMap<OreClusterId, BlockPos> clusterTypes;
@@ -91,7 +105,10 @@ public class ManagedOreClusterChunk implements IMangedChunkData {
     private LinkedHashSet<Biome> biomes;
 
     private Random managedRandom;
-    private ReentrantLock lock = new ReentrantLock();
+    //Edit claim, see tryClaim
+    private static final int UNCLAIMED = 0;
+    private static final int CLAIMED = 1;
+    private final AtomicInteger claim = new AtomicInteger(UNCLAIMED);
 
     //private List<Pair<String, Vec3i>> clusters;
 
@@ -103,6 +120,7 @@ public class ManagedOreClusterChunk implements IMangedChunkData {
         super();
         this.level = level;
         this.id = null;
+        this.key = ChunkKey.NONE;
         this.pos = null;
         this.status = OreClusterStatus.NONE;
         this.timeUnloaded = -1;
@@ -122,7 +140,6 @@ public class ManagedOreClusterChunk implements IMangedChunkData {
      {
         this(level);
         this.setId(id);
-        this.pos = ChunkUtil.getChunkPos( id );
     }
 
 
@@ -132,7 +149,7 @@ public class ManagedOreClusterChunk implements IMangedChunkData {
     {
         OreClusterManager m = OreClusterManager.getManager(level);
         if(m != null) {
-            LevelChunk c = m.getForceLoadedChunk(this.id);
+            LevelChunk c = m.getForceLoadedChunk(this.key);
             if(c != null) return c;
         }
 
@@ -164,10 +181,17 @@ public class ManagedOreClusterChunk implements IMangedChunkData {
         return pos;
     }
 
+    /**
+     * @return String chunk id, only for foundation ManagedChunk lookups, commands, JSON and NBT
+     */
     public String getId() {
         return id;
     }
 
+    public long getKey() {
+        return key;
+    }
+
     public OreClusterStatus getStatus() {
         return status;
     }
@@ -229,18 +253,50 @@ public class ManagedOreClusterChunk implements IMangedChunkData {
 
     public Long getTimeUnloaded() { return timeUnloaded; }
 
+    public long getTimeSerialized() { return timeSerialized; }
+
     public Long getTimeLastLoaded() { return timeLastLoaded; }
 
     public Long getTickLoaded() { return tickLoaded; }
 
+    public int getRegenEpoch() { return regenEpoch; }
+
+    public long getRegenDueTick() { return regenDueTick; }
+
+    @Nullable
+    public ClusterFootprint getFootprint() { return footprint; }
+
+    public ClusterLayout getClusterLayout(OreClusterId oreType) {
+        return (oreType == null) ? null : clusterLayouts.get(oreType);
+    }
+
+    public void setClusterLayout(OreClusterId oreType, ClusterLayout layout) {
+        if(oreType == null) return;
+        if(layout == null) clusterLayouts.remove(oreType);
+        else clusterLayouts.put(oreType, layout);
+    }
+
     public boolean isReady() { return isReady; }
 
     public Random getChunkRandom() {
         return ManagedChunkUtility.getChunkRandom(this.pos, ModRealTimeConfig.CLUSTER_SEED );
     }
 
-    public synchronized ReentrantLock getLock() {
-        return lock;
+    /**
+     * Atomically claims this chunk for editing, a claim never blocks. Callers that fail to claim
+     * must reschedule their work, the claim holder must call release() when finished
+     * @return true if the caller now holds the claim
+     */
+    public boolean tryClaim() {
+        return claim.compareAndSet(UNCLAIMED, CLAIMED);
+    }
+
+    public void release() {
+        claim.set(UNCLAIMED);
+    }
+
+    public boolean isClaimed() {
+        return claim.get() != UNCLAIMED;
     }
 
     public boolean hasBiome(Biome b) {
@@ -279,6 +335,7 @@ public class ManagedOreClusterChunk implements IMangedChunkData {
         if(id == null) return;
         this.id = id;
         this.pos = ChunkUtil.getChunkPos(id);
+        this.key = ChunkKey.of(this.pos);
         this.managedRandom = this.getChunkRandom();
     }
 
@@ -294,6 +351,10 @@ public class ManagedOreClusterChunk implements IMangedChunkData {
     this.status = status;
     }
 
+    public void setRegenEpoch(int regenEpoch) { this.regenEpoch = regenEpoch; }
+
+    public void setRegenDueTick(long regenDueTick) { this.regenDueTick = regenDueTick; }
+
     /**
      * Applies resevoir sampling to determine which single ore should server as cluster position
      * for the cluster type. Does not consider ore Height when sampling
@@ -421,6 +482,8 @@ public class ManagedOreClusterChunk implements IMangedChunkData {
         if( this.clusterTypes == null )
             this.clusterTypes = new HashMap<>();
 
+        //a layout belongs to the source position it was generated from
+        clusterMap.keySet().forEach(this.clusterLayouts::remove);
         this.clusterTypes.putAll( clusterMap );
         //LoggerProject.logDebug("003010", "Adding clusterTypes: " + this.clusterTypes);
     }
@@ -452,39 +515,105 @@ public class ManagedOreClusterChunk implements IMangedChunkData {
 
 
     /**
-     * Check if any updatable blocks in the chunk have been changed
+     * Check if any cluster blocks in the chunk have been changed since they were generated.
+     * Harvest progress is recorded by onBlockChanged as blocks change, so this never reads the chunk
      * isHarvested
-     * @return true if the Chunk has been harvested. False if the chunk is not loaded or the chunk has not been cleaned.
+     * @return true if the Chunk has been harvested. False if the chunk has not been generated.
      */
     public boolean checkClusterHarvested()
     {
-        if( this.id.equals(TEST_ID)) {
-            int i = 0;
-        }
-
         if(this.status == OreClusterStatus.HARVESTED)
             return true;
 
         if( this.status != OreClusterStatus.GENERATED )
             return false;
 
-        LevelChunk chunk = getChunk(false);
-        if(chunk == null)
-            return false;
+        ClusterFootprint f = this.footprint;
+        return f != null && f.harvested() > 0;
+    }
 
-        List<Pair<BlockState, BlockPos>> blocks;    //not implemented
-        for(BlockState block : this.blockStateUpdates.keySet()) {
-            for(var pos : this.blockStateUpdates.get(block)) {
-                if(!chunk.getBlockState(pos).getBlock().equals( block ))
-                {
-                    this.status = OreClusterStatus.HARVESTED;
-                    blockStateUpdates.clear();
-                    return true;
-                }
+    /**
+     * Adds the cluster ore positions of the pending blockStateUpdates to the footprint, call
+     * once they are written to the chunk and before they are cleared. Cluster blocks that reach
+     * into a neighbouring chunk are left out, block changes are only routed to the chunk that owns
+     * the position, so harvest progress counts this chunk's own cluster blocks
+     */
+    public void placeFootprint()
+    {
+        Set<Block> clusterBlocks = clusterBlocks();
+        List<BlockPos> placed = new ArrayList<>();
+        for(Map.Entry<BlockState, LinkedHashSet<BlockPos>> update : this.blockStateUpdates.entrySet()) {
+            if(!clusterBlocks.contains(update.getKey().getBlock())) continue;
+            for(BlockPos pos : update.getValue()) {
+                if((pos.getX() >> 4) == this.pos.x && (pos.getZ() >> 4) == this.pos.z) placed.add(pos);
             }
         }
 
-        return false;
+        ClusterFootprint f = this.footprint;
+        if(f == null) f = new ClusterFootprint();
+        f.place(placed);
+        this.footprint = f;
+    }
+
+    /**
+     * Records a block change in this chunk, O(1). Replacing a cluster ore position with anything
+     * but cluster ore counts as harvest progress and marks a generated chunk HARVESTED
+     * @param pos
+     * @param state new block state
+     * @return true if harvest progress was recorded
+     */
+    public boolean onBlockChanged(BlockPos pos, BlockState state)
+    {
+        ClusterFootprint f = this.footprint;
+        if(f == null || !f.contains(pos)) return false;
+        if(clusterBlocks().contains(state.getBlock())) return false;
+        if(!f.harvest(pos)) return false;
+
+        if(this.status == OreClusterStatus.GENERATED)
+            this.status = OreClusterStatus.HARVESTED;
+        return true;
+    }
+
+    /**
+     * @return fraction of the cluster blocks placed at the last (re)generation that were harvested,
+     *  1 if the chunk has no footprint because it was generated before harvests were tracked
+     */
+    public double getDepletion()
+    {
+        ClusterFootprint f = this.footprint;
+        if(f == null) return 1;
+        int placed = f.placed();
+        return (placed == 0) ? 0 : (double) f.harvested() / placed;
+    }
+
+    /**
+     * @return true if none of the cluster blocks placed at the last (re)generation were harvested
+     */
+    public boolean isUntouched()
+    {
+        ClusterFootprint f = this.footprint;
+        return f != null && f.harvested() == 0;
+    }
+
+    /**
+     * @return true if every cluster with a source position has a stored layout
+     */
+    private boolean hasLayoutForEveryCluster()
+    {
+        if(this.clusterTypes == null || this.clusterTypes.isEmpty()) return false;
+        for(Map.Entry<OreClusterId, BlockPos> cluster : this.clusterTypes.entrySet()) {
+            if(cluster.getValue() != null && !this.clusterLayouts.containsKey(cluster.getKey())) return false;
+        }
+        return true;
+    }
+
+    private Set<Block> clusterBlocks()
+    {
+        if(this.clusterTypes == null || this.clusterTypes.isEmpty()) return Collections.emptySet();
+        Set<Block> blocks = new HashSet<>(4);
+        for(OreClusterId oreType : this.clusterTypes.keySet())
+            if(oreType != null) blocks.add(oreType.getBlock());
+        return blocks;
     }
 
     public boolean hasBlockUpdates() {
@@ -496,8 +625,8 @@ public class ManagedOreClusterChunk implements IMangedChunkData {
         this.updatesSize = 0;
     }
 
-    public ManagedOreClusterChunk getEarliest(Map<String, ManagedOreClusterChunk> loadedChunks) {
-        ManagedOreClusterChunk existing = loadedChunks.get(this.id);
+    public ManagedOreClusterChunk getEarliest(Long2ObjectMap<ManagedOreClusterChunk> loadedChunks) {
+        ManagedOreClusterChunk existing = loadedChunks.get(this.key);
         if(existing == null)
             return this;
 
@@ -534,8 +663,9 @@ public class ManagedOreClusterChunk implements IMangedChunkData {
         OreClusterManager manager = OreClustersAndRegenMain.getManagers().get(level);
         if(manager != null)
         {
-            if(manager.getLoadedChunk(id) != null)
-                return manager.getLoadedChunk(id);
+            ManagedOreClusterChunk loaded = manager.getLoadedChunk(ChunkKey.fromId(id));
+            if(loaded != null)
+                return loaded;
         }
 
         ManagedOreClusterChunk chunk = ManagedOreClusterChunk.getInstance(level, id);
@@ -547,11 +677,9 @@ public class ManagedOreClusterChunk implements IMangedChunkData {
         return subClass.equals(ManagedOreClusterChunk.class.getName()) && this.id != null;
     }
 
-    private static Set<String> loadedIds = new HashSet<>();
     @Override
     public void handleChunkLoaded(ChunkLoadingEvent.Load event)
     {
-        loadedIds.add(this.id);
         this.level = event.getLevel();
         this.pos = event.getChunkPos();
         this.timeUnloaded = -1;
@@ -576,6 +704,16 @@ public class ManagedOreClusterChunk implements IMangedChunkData {
         return ManagedOreClusterChunk.getInstance(level, ChunkUtil.getId( chunk ));
     }
 
+    /**
+     * Get an instance of the ManagedOreClusterChunk using a packed ChunkKey
+     * @param level
+     * @param key
+     * @return
+     */
+    public static ManagedOreClusterChunk getInstance(LevelAccessor level, long key) {
+        return ManagedOreClusterChunk.getInstance(level, ChunkKey.toId(key));
+    }
+
     /**
      * Get an instance of the ManagedOreClusterChunk using an existing id, for a chunk that may not be loaded yet
      * @param level
@@ -663,13 +801,36 @@ public class ManagedOreClusterChunk implements IMangedChunkData {
         CompoundTag details = new CompoundTag();
         details.putString("id", this.id);
         details.putLong("tickLoaded", this.tickLoaded);
+        details.putInt("regenEpoch", this.regenEpoch);
+        details.putLong("regenDueTick", this.regenDueTick);
+
+        ClusterFootprint f = this.footprint;
+        if( f != null ) {
+            details.putIntArray("clusterFootprint", f.toPacked());
+            details.putInt("clusterHarvested", f.harvested());
+        }
+
+        if( !this.clusterLayouts.isEmpty() && this.clusterTypes != null ) {
+            CompoundTag layoutsTag = new CompoundTag();
+            this.clusterLayouts.forEach((oreClusterId, layout) -> {
+                if(this.clusterTypes.containsKey(oreClusterId))
+                    layoutsTag.put(oreClusterId.getStringId(), layout.save());
+            });
+            details.put("clusterLayouts", layoutsTag);
+        }
 
-        if( this.id.equals(TEST_ID)) {
+        //Completion signal for chunks waiting to be evicted
+        this.timeSerialized = System.currentTimeMillis();
+        OreClusterManager m = (level == null) ? null : OreClusterManager.getManager(level);
+        if( m != null ) m.onChunkSerialized(this.key);
+
+        if( this.key == TEST_KEY) {
             int i = 0;
         }
 
 
-        if( this.hasBlockUpdates() )
+        //Pending updates of a pregenerated chunk are restored from its cluster layouts, any others are generated again
+        if( this.hasBlockUpdates() && !(this.status == OreClusterStatus.PREGENERATED && hasLayoutForEveryCluster()) )
             details.putString("status", OreClusterStatus.CLEANED.toString());
         else
             details.putString("status", this.status.toString() );
@@ -694,54 +855,30 @@ public class ManagedOreClusterChunk implements IMangedChunkData {
         }
 
 
-        //blockStateUpdates - dont serialize over 10KB
-        /*
-        {
-            if(this.blockStateUpdates == null || this.blockStateUpdates.size() == 0) {
-                details.putString("blockStateUpdates", "");
-            }
-            else
-            {
-                Map<Block, List<BlockPos>> blocks = new HashMap<>();
-                this.blockStateUpdates.forEach((pair) -> {
-                    Block block = pair.getLeft();
-                    if(!blocks.containsKey(block))
-                        blocks.put(block, new ArrayList<>());
-                });
-
-                for(Pair<Block, BlockPos> pair : this.blockStateUpdates)
-                {
-                    Block block = pair.getLeft();
-                    BlockPos pos = pair.getRight();
-                    blocks.get(block).add(pos);
-                }
-
-                String blockStateUpdates = BlockUtil.serializeBlockPairs(blocks);
-                details.putString("blockStateUpdates", blockStateUpdates);
-            }
-
-        }
-        */
+        //blockStateUpdates are not serialized, the clusterLayouts above restore them in about 1.5 bytes per block
 
         LoggerProject.logDebug("003007", "Serializing ManagedOreChunk: " + details);
 
         return details;
     }
 
-    private static Set<String> deserializedIds = new HashSet<>();
     @Override
     public void deserializeNBT(CompoundTag tag)
     {
         if(tag == null || tag.isEmpty())
             return;
 
-        deserializedIds.add(this.id);
         this.pos = ChunkUtil.getChunkPos( this.id );
+        this.key = ChunkKey.of( this.pos );
         this.tickLoaded = tag.getLong("tickLoaded");
+        this.regenEpoch = tag.getInt("regenEpoch");     //0 for chunks saved before regen epochs
+        this.regenDueTick = tag.getLong("regenDueTick");
+        if( tag.contains("clusterFootprint") )
+            this.footprint = ClusterFootprint.fromPacked(tag.getIntArray("clusterFootprint"), tag.getInt("clusterHarvested"));
         this.timeUnloaded = -1;
         this.status = OreClusterStatus.valueOf( tag.getString("status") );
 
-        if( this.id.equals(TEST_ID)) {
+        if( this.key == TEST_KEY) {
             int i = 0;
         }
 
@@ -769,29 +906,31 @@ public class ManagedOreClusterChunk implements IMangedChunkData {
             //LoggerProject.logDebug("003008", "Deserializing clusterTypes: " + clusterTypes);
         }
 
-        //blockStateUpdates
-        /*
+        //Cluster Layouts
         {
-            String blockStateUpdates = tag.getString("blockStateUpdates");
-            this.blockStateUpdates = new ConcurrentLinkedQueue<>();
-            if(blockStateUpdates == null || blockStateUpdates.isEmpty()) {
-               //add nothing
+            this.clusterLayouts.clear();
+            CompoundTag layoutsTag = tag.getCompound("clusterLayouts");
+            for (String key : layoutsTag.getAllKeys()) {
+                OreClusterId oreClusterId = CONFIG.getOreConfigId(Integer.parseInt(key));
+                ClusterLayout layout = ClusterLayout.load(layoutsTag.getCompound(key));
+                if(oreClusterId != null && layout != null && this.clusterTypes.containsKey(oreClusterId))
+                    this.clusterLayouts.put(oreClusterId, layout);
             }
-            else {
-                Map<Block,List<BlockPos>> blocks =  BlockUtil.deserializeBlockPairs(blockStateUpdates);
-                for(Map.Entry<Block, List<BlockPos>> entry : blocks.entrySet())
-                {
-                    Block block = entry.getKey();
-                    List<BlockPos> positions = entry.getValue();
-                    for(BlockPos pos : positions)
-                    {
-                        this.blockStateUpdates.add( Pair.of(block, pos) );
-                    }
-                }
+        }
+
+        //blockStateUpdates of a pregenerated chunk, rebuilt from its layouts
+        if( this.status == OreClusterStatus.PREGENERATED )
+        {
+            this.clearBlockStateUpdates();
+            if( hasLayoutForEveryCluster() ) {
+                for(ClusterLayout layout : this.clusterLayouts.values())
+                    for(Pair<BlockState, BlockPos> p : layout.positions(this.pos))
+                        this.addBlockStateUpdate(p.getLeft(), p.getRight());
+            } else {
+                this.status = OreClusterStatus.CLEANED;
             }
-            LoggerProject.logDebug("003009", "Deserializing blockStateUpdates: " + blockStateUpdates);
         }
-        */
+
 
         OreClusterManager.addManagedOreClusterChunk( this );
     }
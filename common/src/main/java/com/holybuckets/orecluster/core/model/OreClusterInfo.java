@@ -31,6 +31,16 @@ public class OreClusterInfo {
         this.status = chunk.getStatus();
         this.position = chunk.getClusterTypes().get(oreType);
     }
+
+    public OreClusterInfo(LevelAccessor level, long chunkId, OreClusterConfigModel.OreClusterId oreType,
+        BlockPos position, OreClusterStatus status)
+    {
+        this.level = level;
+        this.chunkId = ChunkKey.toId(chunkId);
+        this.oreType = oreType;
+        this.status = status;
+        this.position = position;
+    }
     
     
     public void calcPointDistance(Vec3i point) {
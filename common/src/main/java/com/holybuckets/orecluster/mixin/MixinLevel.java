@@ -1,6 +1,6 @@
 package com.holybuckets.orecluster.mixin;
 
-import com.holybuckets.orecluster.LoggerProject;
+import com.holybuckets.orecluster.core.OreClusterManager;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.state.BlockState;
@@ -16,9 +16,10 @@ public abstract class MixinLevel {
     @Shadow
     public abstract boolean setBlock(BlockPos pos, BlockState state, int i, int flags);
 
-    @Inject(method = "setBlock(Lnet/minecraft/core/BlockPos;Lnet/minecraft/world/level/block/state/BlockState;II)Z", at = @At("HEAD"), cancellable = true)
+    //Feeds cluster harvest tracking, only block changes that took effect are counted
+    @Inject(method = "setBlock(Lnet/minecraft/core/BlockPos;Lnet/minecraft/world/level/block/state/BlockState;II)Z", at = @At("RETURN"))
     private void mapOreClusterBlockState(BlockPos pos, BlockState state, int i, int flags, CallbackInfoReturnable<Boolean> cir) {
-        //nothing yet
-        //LoggerProject.logInfo("099000", "MixinLevel setBlock");
+        if( !cir.getReturnValueZ() ) return;
+        OreClusterManager.onBlockChanged((Level) (Object) this, pos, state);
     }
 }